@@ -5,10 +5,10 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Log;
-import android.util.Pair;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -30,7 +30,11 @@ import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
 import com.angmolin.livechess2fen.chessboard.ChessboardDrawer;
 import com.angmolin.livechess2fen.classifier.ImageClassifier;
 import com.angmolin.livechess2fen.classifier.TFImageClassifier;
-import com.angmolin.livechess2fen.types.ImageObject;
+import com.angmolin.livechess2fen.pipeline.FrameJob;
+import com.angmolin.livechess2fen.pipeline.FramePipeline;
+import com.angmolin.livechess2fen.types.MatPool;
+import com.angmolin.livechess2fen.types.Pair;
+import com.angmolin.livechess2fen.utils.BitmapPool;
 
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
@@ -50,14 +54,17 @@ import java.util.List;
 
 import static com.angmolin.livechess2fen.utils.Utils.previewBitmap;
 
-public class MainActivity extends AppCompatActivity implements CvCameraViewListener2, ActivityCompat.OnRequestPermissionsResultCallback {
+public class MainActivity extends AppCompatActivity implements CvCameraViewListener2, FramePipeline.Listener, ActivityCompat.OnRequestPermissionsResultCallback {
 
     private static final String TAG = "LiveChess2FEN";
 
     private static final int PERMISSION_REQUESTS = 1;
 
-    private Pair<List<double[]>, List<double[]>> lastFourPointsCornerPoints;
-    private String lastFEN;
+    private volatile Pair<List<double[]>, List<double[]>> lastFourPointsCornerPoints;
+    private volatile String lastFEN;
+
+    private long lastCameraFrameTime;
+    private long lastPipelineFrameTime;
 
     private boolean benchmarkMode = false;
     private boolean viewChessboardDraw = true;
@@ -68,6 +75,7 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
     private ImageView imageView;
 
     private ChessboardDetector chessboardDetector;
+    private FramePipeline framePipeline;
 
     private ImageClassifier lapsClassifier;
     private int lapsClassifierCores;
@@ -77,6 +85,10 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
     private String lapsCNN;
     private String piecesCNN;
 
+    // Bitmaps of the image view, the displayed one goes back once replaced
+    private final BitmapPool bitmapPool = new BitmapPool(2);
+    private Bitmap displayedBitmap;
+
     private BaseLoaderCallback  mLoaderCallback = new BaseLoaderCallback(this) {
         @Override
         public void onManagerConnected(int status) {
@@ -146,6 +158,7 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
         initializeOpenCV();
         initializeImageClassifiers();
         initializeChessboardDetector();
+        initializeFramePipeline();
     }
 
     private void initializeUIComponents() {
@@ -187,7 +200,7 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
                     getAssets(),
                     "tflite_models/laps/" + lapsCNN,
                     0.5f,
-                    1,
+                    64,
                     new Size(21, 21),
                     1,
                     2,
@@ -199,7 +212,7 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
                     getAssets(),
                     "tflite_models/pieces/" + piecesCNN,
                     0.5f,
-                    1,
+                    64,
                     new Size(224, 224),
                     3,
                     13,
@@ -213,18 +226,41 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
 
     private void initializeChessboardDetector() {
         this.chessboardDetector = new ChessboardDetector(lapsClassifier);
+
+        // One thread per CLAHE setting of SLID
+        this.chessboardDetector.setSlidParallelism(Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        this.chessboardDetector.setCpsParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    private void initializeFramePipeline() {
+        lastFourPointsCornerPoints = null;
+        lastPipelineFrameTime = 0;
+
+        this.framePipeline = new FramePipeline(chessboardDetector, piecesClassifier, this);
+        this.framePipeline.start();
+    }
+
+    private void stopFramePipeline() {
+        if (framePipeline != null) {
+            framePipeline.stop();
+            framePipeline = null;
+        }
     }
     
     @Override
     public void onPause()
     {
         super.onPause();
+        stopFramePipeline();
         if (cameraBridgeViewBase != null)
             cameraBridgeViewBase.disableView();
     }
 
     public void onDestroy() {
         super.onDestroy();
+        stopFramePipeline();
+        if (chessboardDetector != null)
+            chessboardDetector.shutdown();
         if (cameraBridgeViewBase != null)
             cameraBridgeViewBase.disableView();
     }
@@ -239,78 +275,75 @@ public class MainActivity extends AppCompatActivity implements CvCameraViewListe
 
     public Mat onCameraFrame(CvCameraViewFrame inputFrame) {
         Mat inputMat = inputFrame.rgba();
-        Mat result;
 
-        StringBuilder Stats = new StringBuilder();
-        long startTime, endTime;
-        long startChessboardDetectorDetect, endChessboardDetectorDetect;
-        long startBoardSplitterSplitSquaresFromBoardImage, endBoardSplitterSplitSquaresFromBoardImage;
-        long startPiecesClassifierClassifyAndGetResult, endPiecesClassifierClassifyAndGetResult;
-        long startPiecesInferrerInferChessPieces, endPiecesInferrerInferChessPieces;
-        double fps;
+        long frameTime = SystemClock.uptimeMillis();
+        double fps = lastCameraFrameTime > 0 ? 1000.0 / Math.max(1, frameTime - lastCameraFrameTime) : 0;
+        lastCameraFrameTime = frameTime;
 
-        startTime = SystemClock.uptimeMillis();
-        startChessboardDetectorDetect = SystemClock.uptimeMillis();
-
-        try {
-            // Step 1: Chessboard detect
-            ImageObject imageObject = chessboardDetector.detect(inputMat, lastFourPointsCornerPoints != null ? lastFourPointsCornerPoints.first : null);
-            Pair<List<double[]>, List<double[]>> fourPointsCornerPoints = chessboardDetector.computeCorners(imageObject);
-            lastFourPointsCornerPoints = fourPointsCornerPoints;
-            endChessboardDetectorDetect = SystemClock.uptimeMillis();
-
-            // Step 2: Chessboard square split
-            startBoardSplitterSplitSquaresFromBoardImage = SystemClock.uptimeMillis();
-            List<Mat> squares = BoardSplitter.splitSquaresFromBoardImage(imageObject.last().original);
-            endBoardSplitterSplitSquaresFromBoardImage = SystemClock.uptimeMillis();
-
-            // Step 3: Convolutional neural network
-            startPiecesClassifierClassifyAndGetResult = SystemClock.uptimeMillis();
-            float[][] cnnResults = new float[squares.size()][];
-            for (int i = 0; i < squares.size(); i++) {
-                cnnResults[i] = piecesClassifier.classifyAndGetResult(squares.get(i));
-            }
-            endPiecesClassifierClassifyAndGetResult = SystemClock.uptimeMillis();
+        if (framePipeline != null) {
+            framePipeline.submit(inputMat);
+        }
 
-            // Step 4: Piece post-processing
-            startPiecesInferrerInferChessPieces = SystemClock.uptimeMillis();
-            Character[] boardArray = PiecesInferrer.inferChessPieces(cnnResults, Fen.A1Pos.BottomLeft, null);
-            lastFEN = Fen.boardToFen(boardArray);
-            endPiecesInferrerInferChessPieces = SystemClock.uptimeMillis();
+        // Corners of the last processed frame, the preview runs ahead of the pipeline
+        Pair<List<double[]>, List<double[]>> fourPointsCornerPoints = lastFourPointsCornerPoints;
+        if (fourPointsCornerPoints != null) {
+            for (double[] p : fourPointsCornerPoints.first)
+                Imgproc.circle(inputMat, new Point(p), 10, new Scalar(0, 255, 0), -1);
+            for (double[] p : fourPointsCornerPoints.second)
+                Imgproc.circle(inputMat, new Point(p), 10, new Scalar(0, 0, 255), -1);
+        }
 
+        runOnUiThread(() -> cameraViewText.setText(String.format("%.2f FPS", fps)));
 
-            if (viewChessboardDraw)
-                runOnUiThread(() -> imageView.setImageBitmap(ChessboardDrawer.drawChessboard(getApplicationContext().getResources(), boardArray)));
-            else
-                runOnUiThread(() -> imageView.setImageBitmap(previewBitmap(imageObject.last().original)));
+        return inputMat;
+    }
 
-            for (double[] p : fourPointsCornerPoints.first)
-                Imgproc.circle(imageObject.first().original, new Point(p), 10, new Scalar(0, 255, 0), -1);
-            for (double[] p : fourPointsCornerPoints.second)
-                Imgproc.circle(imageObject.first().original, new Point(p), 10, new Scalar(0, 0, 255), -1);
-
-            Stats.append(String.format("FEN: %s\n\n", lastFEN));
-            if (benchmarkMode) {
-                Stats.append(String.format("Pieces CNN: %s\n", piecesCNN));
-                Stats.append(String.format("Chessboard detect @%d: %d ms\n", lapsClassifierCores, endChessboardDetectorDetect - startChessboardDetectorDetect));
-                Stats.append(String.format("Chessboard square split: %d ms\n", endBoardSplitterSplitSquaresFromBoardImage - startBoardSplitterSplitSquaresFromBoardImage));
-                Stats.append(String.format("Convolutional neural network @%d: %d ms\n", piecesClassifierCores, endPiecesClassifierClassifyAndGetResult - startPiecesClassifierClassifyAndGetResult));
-                Stats.append(String.format("Piece post-processing: %d ms\n", endPiecesInferrerInferChessPieces - startPiecesInferrerInferChessPieces));
-            }
-            runOnUiThread(() -> imageViewText.setText(Stats));
+    /*
+     * Runs on the UI thread. The previous Bitmap is no longer drawn once
+     * the view shows the new one, so it can be reused.
+     */
+    private void displayBitmap(Bitmap bitmap) {
+        imageView.setImageBitmap(bitmap);
 
-            result = imageObject.first().original;
-        }
-        catch (Exception exception) {
-            result = inputMat;
+        if (displayedBitmap != null && displayedBitmap != bitmap) {
+            bitmapPool.recycle(displayedBitmap);
         }
 
-        endTime = SystemClock.uptimeMillis();
-        fps = 1000.0 / (endTime - startTime);
+        displayedBitmap = bitmap;
+    }
 
-        runOnUiThread(() -> cameraViewText.setText(String.format("%.2f FPS", fps)));
+    @Override
+    public void onFrameProcessed(FrameJob job) {
+        lastFourPointsCornerPoints = job.fourPointsCornerPoints;
+        lastFEN = job.fen;
+
+        double pipelineFps = lastPipelineFrameTime > 0 ? 1000.0 / Math.max(1, job.finishTimestamp - lastPipelineFrameTime) : 0;
+        lastPipelineFrameTime = job.finishTimestamp;
+
+        if (viewChessboardDraw) {
+            Bitmap chessboardBitmap = ChessboardDrawer.drawChessboard(getApplicationContext().getResources(), job.boardArray, bitmapPool);
+            runOnUiThread(() -> displayBitmap(chessboardBitmap));
+        }
+        else {
+            Bitmap boardBitmap = previewBitmap(job.imageObject.last().original, bitmapPool);
+            runOnUiThread(() -> displayBitmap(boardBitmap));
+        }
 
-        return result;
+        StringBuilder Stats = new StringBuilder();
+        Stats.append(String.format("FEN: %s\n\n", lastFEN));
+        if (benchmarkMode) {
+            Stats.append(String.format("Pieces CNN: %s\n", piecesCNN));
+            Stats.append(String.format("Chessboard detect @%d: %d ms\n", lapsClassifierCores, job.detectTime));
+            Stats.append(String.format("Board tracking: %s\n", job.trackingState));
+            Stats.append(String.format("Chessboard square split: %d ms\n", job.splitTime));
+            Stats.append(String.format("Convolutional neural network @%d: %d ms\n", piecesClassifierCores, job.classifyTime));
+            Stats.append(String.format("Changed squares: %d/%d, cache hit ratio %.1f%%\n", job.changedSquares, job.squares.size(), job.squareHitRatio * 100));
+            Stats.append(String.format("Piece post-processing: %d ms\n", job.inferTime));
+            Stats.append(String.format("Pipeline: %.2f FEN/s, latency %d ms\n", pipelineFps, job.latency()));
+            Stats.append(String.format("Frames: %d submitted, %d dropped, %d failed\n", framePipeline.getSubmittedFrames(), framePipeline.getDroppedFrames(), framePipeline.getFailedFrames()));
+            Stats.append(String.format("Buffer pools: Mats %d hits/%d misses, Bitmaps %d hits/%d misses\n", MatPool.shared.getHits(), MatPool.shared.getMisses(), bitmapPool.getHits(), bitmapPool.getMisses()));
+        }
+        runOnUiThread(() -> imageViewText.setText(Stats));
     }
 
     private String[] getRequiredPermissions() {
@@ -6,6 +6,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 
 import com.angmolin.livechess2fen.R;
+import com.angmolin.livechess2fen.utils.BitmapPool;
 
 public class ChessboardDrawer {
 
@@ -27,6 +28,14 @@ public class ChessboardDrawer {
     private static Bitmap blackPawnBitmap = null;
 
     public static Bitmap drawChessboard(Resources resources, Character[] board) {
+        return drawChessboard(resources, board, null);
+    }
+
+    /*
+     * The board is drawn on a Bitmap borrowed from the pool when there is
+     * one, instead of a new copy of the empty chessboard.
+     */
+    public static Bitmap drawChessboard(Resources resources, Character[] board, BitmapPool pool) {
         if (chessboardBitmap == null)
             chessboardBitmap = BitmapFactory.decodeResource(resources, R.drawable.chessboard);
         if (whiteRookBitmap == null)
@@ -54,8 +63,20 @@ public class ChessboardDrawer {
         if (blackPawnBitmap == null)
             blackPawnBitmap = BitmapFactory.decodeResource(resources, R.drawable.pawn_n);
 
-        Bitmap chessboard = chessboardBitmap.copy(chessboardBitmap.getConfig(), true);
-        Canvas chessboardCanvas = new Canvas(chessboard);
+        Bitmap chessboard;
+        Canvas chessboardCanvas;
+
+        if (pool != null) {
+            Bitmap.Config config = chessboardBitmap.getConfig() != null ? chessboardBitmap.getConfig() : Bitmap.Config.ARGB_8888;
+
+            chessboard = pool.borrow(chessboardBitmap.getWidth(), chessboardBitmap.getHeight(), config);
+            chessboardCanvas = new Canvas(chessboard);
+            chessboardCanvas.drawBitmap(chessboardBitmap, 0, 0, null);
+        }
+        else {
+            chessboard = chessboardBitmap.copy(chessboardBitmap.getConfig(), true);
+            chessboardCanvas = new Canvas(chessboard);
+        }
 
         for (int i = 0; i < board.length; i++) {
             int x = i / 8, y = i % 8;
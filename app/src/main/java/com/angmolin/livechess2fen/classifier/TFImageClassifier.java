@@ -2,7 +2,6 @@ package com.angmolin.livechess2fen.classifier;
 
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
-import android.graphics.Bitmap;
 import android.os.SystemClock;
 import android.util.Log;
 
@@ -15,12 +14,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.List;
 
 public class TFImageClassifier implements ImageClassifier {
 
-    private final Interpreter interpreter;
+    private static final float[] normalization = normalizationTable();
+
+    private final MappedByteBuffer model;
+    private final int numThreads;
     private final ByteBuffer inputImage;
 
     private final String path;
@@ -31,8 +35,22 @@ public class TFImageClassifier implements ImageClassifier {
     private final int pixelSize;
     private final int modelIndices;
 
-    private final int[] intValues;
-    private final float[][] outputArray;
+    private final int imageBytes;
+
+    // One interpreter per batch size, so the input shape of each one is
+    // only set once. Created on first use
+    private final int[] batchSizes;
+    private final Interpreter[] interpreters;
+    private final ByteBuffer[] batchInputs;
+    private final float[][][] outputArrays;
+
+    private final FloatBuffer inputFloats;
+    private final Mat resizedImage;
+    private final float[] floatValues;
+    private byte[] pixelBytes;
+
+    // Output of the last inference, with a row per slot of its batch
+    private float[][] outputArray;
 
     public TFImageClassifier(AssetManager assetManager, String path, float confidenceThreshold, int batchSize, Size imageSize, int pixelSize, int modelIndices, int numThreads) throws IOException {
         this.path = path;
@@ -43,16 +61,51 @@ public class TFImageClassifier implements ImageClassifier {
         this.pixelSize = pixelSize;
         this.modelIndices = modelIndices;
 
-        intValues = new int[(int)(imageSize.width * imageSize.height)];
-        outputArray = new float[this.batchSize][this.modelIndices];
+        model = mapFileInMemory(assetManager);
+        this.numThreads = numThreads;
+
+        batchSizes = batchSizes(batchSize);
+        interpreters = new Interpreter[batchSizes.length];
+        batchInputs = new ByteBuffer[batchSizes.length];
+        outputArrays = new float[batchSizes.length][][];
 
-        interpreter = new Interpreter(mapFileInMemory(assetManager), numThreads);
-        inputImage = ByteBuffer.allocateDirect(4
-                        * batchSize
-                        * (int)imageSize.width
-                        * (int)imageSize.height
-                        * pixelSize);
+        imageBytes = 4
+                * (int)imageSize.width
+                * (int)imageSize.height
+                * pixelSize;
+        inputImage = ByteBuffer.allocateDirect(imageBytes * batchSize);
         inputImage.order(ByteOrder.nativeOrder());
+        inputFloats = inputImage.asFloatBuffer();
+
+        resizedImage = new Mat();
+        floatValues = new float[(int)imageSize.width * (int)imageSize.height * pixelSize];
+        pixelBytes = new byte[0];
+    }
+
+    /*
+     * Powers of four up to batchSize, and batchSize itself. A batch runs on
+     * the smallest one that holds it, so at most 3 of every 4 slots are
+     * padding and the interpreters never resize their tensors.
+     */
+    private static int[] batchSizes(int batchSize) {
+        int count = 1;
+        for (int size = 1; size < batchSize; size *= 4) {
+            count++;
+        }
+
+        int[] sizes = new int[count];
+        int size = 1;
+        for (int i = 0; i < count - 1; i++, size *= 4) {
+            sizes[i] = size;
+        }
+        sizes[count - 1] = Math.max(batchSize, 1);
+
+        return sizes;
+    }
+
+    @Override
+    public Size getInputSize() {
+        return imageSize;
     }
 
     private MappedByteBuffer mapFileInMemory(AssetManager assetManager) throws IOException {
@@ -67,77 +120,127 @@ public class TFImageClassifier implements ImageClassifier {
         return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
     }
 
-    private void convertBitmapToByteBuffer(Bitmap bitmap) {
-        if (inputImage == null) {
+    private static float[] normalizationTable() {
+        float[] table = new float[256];
+
+        for (int i = 0; i < table.length; i++) {
+            table[i] = i / 255.0f;
+        }
+
+        return table;
+    }
+
+    /*
+     * Writes the image as normalized floats into the slot of the input
+     * buffer given by index. The image is resized into a reusable Mat,
+     * its bytes are read in bulk and converted through a lookup table, so
+     * no allocations are done per image once the buffers are warmed up.
+     *
+     * Multichannel images are expected in RGB(A) order and the last
+     * pixelSize channels of RGB are written, gray images are replicated.
+     */
+    private void convertMatToByteBuffer(Mat image, int index) {
+        if (model == null) {
+            Log.e("TFImageClassifier", "Image classifier has not been initialized; Skipped.");
             return;
         }
 
-        inputImage.rewind();
-        bitmap.getPixels(intValues, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        if (image.rows() != imageSize.height || image.cols() != imageSize.width) {
+            Imgproc.resize(image, resizedImage, imageSize, 0, 0, Imgproc.INTER_CUBIC);
 
-        int pixel = 0;
-        long startTime = SystemClock.uptimeMillis();
+            image = resizedImage;
+        }
 
-        for (int i = 0; i < (int)imageSize.width; i++) {
-            for (int j = 0; j < (int)imageSize.height; j++) {
-                final int val = intValues[pixel++];
+        int channels = image.channels();
+        int pixels = (int)imageSize.width * (int)imageSize.height;
 
-                if (pixelSize == 3) {
-                    inputImage.putFloat(((val >> 16) & 0xFF) / 255.0f);
-                }
+        if (pixelBytes.length != pixels * channels) {
+            pixelBytes = new byte[pixels * channels];
+        }
+        image.get(0, 0, pixelBytes);
 
-                if (pixelSize >= 2) {
-                    inputImage.putFloat(((val >> 8) & 0xFF) / 255.0f);
-                }
+        int value = 0;
+        for (int pixel = 0, offset = 0; pixel < pixels; pixel++, offset += channels) {
+            if (channels < 3) {
+                float gray = normalization[pixelBytes[offset] & 0xFF];
 
-                if (pixelSize >= 1) {
-                    inputImage.putFloat(((val) & 0xFF) / 255.0f);
+                for (int i = 0; i < pixelSize; i++) {
+                    floatValues[value++] = gray;
+                }
+            }
+            else {
+                for (int i = 3 - pixelSize; i < 3; i++) {
+                    floatValues[value++] = normalization[pixelBytes[offset + i] & 0xFF];
                 }
             }
         }
 
-        long endTime = SystemClock.uptimeMillis();
-        Log.d("TFImageClassifier", "Timecost to put values into ByteBuffer: " + (endTime - startTime));
+        inputFloats.position(index * floatValues.length);
+        inputFloats.put(floatValues);
     }
 
-    private void convertMatToByteBuffer(Mat image) {
-        if (interpreter == null) {
-            Log.e("TFImageClassifier", "Image classifier has not been initialized; Skipped.");
-            return;
+    private int batchIndex(int n) {
+        int index = 0;
+        while (batchSizes[index] < n) {
+            index++;
         }
 
-        if (image.rows() != imageSize.height || image.cols() != imageSize.width) {
-            Mat resizedImage = new Mat(imageSize, image.type());
-            Imgproc.resize(image, resizedImage, imageSize, 0, 0, Imgproc.INTER_CUBIC);
+        return index;
+    }
 
-            image = resizedImage;
-        }
+    private Interpreter interpreter(int index) {
+        if (interpreters[index] == null) {
+            int size = batchSizes[index];
 
-        Bitmap bitmap = Bitmap.createBitmap(image.cols(), image.rows(), Bitmap.Config.RGB_565);
-        org.opencv.android.Utils.matToBitmap(image, bitmap);
+            Interpreter interpreter = new Interpreter(model, numThreads);
+            if (interpreter.getInputTensor(0).shape()[0] != size) {
+                interpreter.resizeInput(0, new int[] { size, (int)imageSize.height, (int)imageSize.width, pixelSize });
+            }
 
-        convertBitmapToByteBuffer(bitmap);
+            ByteBuffer view = inputImage.duplicate();
+            view.position(0);
+            view.limit(size * imageBytes);
+
+            interpreters[index] = interpreter;
+            batchInputs[index] = view.slice().order(ByteOrder.nativeOrder());
+            outputArrays[index] = new float[size][this.modelIndices];
+        }
+
+        return interpreters[index];
     }
 
-    private void runInference() {
+    /*
+     * Runs the first n slots of the input buffer. The slots past n up to
+     * the batch size hold whatever the previous images left there, their
+     * output rows are ignored.
+     */
+    private void runInference(int n) {
+        int index = batchIndex(n);
+        Interpreter interpreter = interpreter(index);
+        outputArray = outputArrays[index];
+
         long startTime = SystemClock.uptimeMillis();
-        interpreter.run(inputImage, outputArray);
+        interpreter.run(batchInputs[index], outputArray);
         long endTime = SystemClock.uptimeMillis();
         Log.d("TFImageClassifier", "Timecost to run model inference: " + (endTime - startTime));
     }
 
     private void classify(Mat image) {
-        convertMatToByteBuffer(image);
-        runInference();
+        convertMatToByteBuffer(image, 0);
+        runInference(1);
     }
 
     private int getMaximum() {
+        return getMaximum(0);
+    }
+
+    private int getMaximum(int row) {
         int maxIndex = -1;
         float maxProb = confidenceThreshold;
 
-        for (int i = 0; i < outputArray[0].length; i++) {
-            if (outputArray[0][i] >= maxProb) {
-                maxProb = outputArray[0][i];
+        for (int i = 0; i < outputArray[row].length; i++) {
+            if (outputArray[row][i] >= maxProb) {
+                maxProb = outputArray[row][i];
                 maxIndex = i;
             }
         }
@@ -163,4 +266,54 @@ public class TFImageClassifier implements ImageClassifier {
         return probabilities;
     }
 
+    /*
+     * Classifies the images in chunks of batchSize, one interpreter
+     * invocation per chunk. The result is a flat [images.size() * modelIndices]
+     * tensor in the same order as the input list.
+     */
+    @Override
+    public float[] classifyBatch(List<Mat> images) {
+        float[] probabilities = new float[images.size() * this.modelIndices];
+
+        for (int offset = 0; offset < images.size(); offset += batchSize) {
+            int n = Math.min(batchSize, images.size() - offset);
+
+            for (int i = 0; i < n; i++) {
+                convertMatToByteBuffer(images.get(offset + i), i);
+            }
+
+            runInference(n);
+
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(outputArray[i], 0, probabilities, (offset + i) * this.modelIndices, this.modelIndices);
+            }
+        }
+
+        return probabilities;
+    }
+
+    /*
+     * Same as classifyAndGetMax for every image, batched as classifyBatch.
+     */
+    @Override
+    public int[] classifyBatchAndGetMax(List<Mat> images) {
+        int[] maximums = new int[images.size()];
+
+        for (int offset = 0; offset < images.size(); offset += batchSize) {
+            int n = Math.min(batchSize, images.size() - offset);
+
+            for (int i = 0; i < n; i++) {
+                convertMatToByteBuffer(images.get(offset + i), i);
+            }
+
+            runInference(n);
+
+            for (int i = 0; i < n; i++) {
+                maximums[offset + i] = getMaximum(i);
+            }
+        }
+
+        return maximums;
+    }
+
 }
@@ -0,0 +1,41 @@
+package com.angmolin.livechess2fen.utils;
+
+import android.graphics.Bitmap;
+
+import com.angmolin.livechess2fen.types.BufferPool;
+
+/*
+ * Mutable Bitmaps keyed by width, height and config. A Bitmap shown in a
+ * view can only be recycled once the view displays another one.
+ */
+public class BitmapPool extends BufferPool<Bitmap> {
+
+    public BitmapPool(int maxIdlePerKey) {
+        super(maxIdlePerKey);
+    }
+
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) width << 40) | ((long) height << 16) | config.ordinal();
+    }
+
+    @Override
+    protected long key(Bitmap bitmap) {
+        if (bitmap.isRecycled() || bitmap.getConfig() == null) {
+            return unpooled;
+        }
+
+        return key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+    }
+
+    @Override
+    protected void destroy(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+
+    public Bitmap borrow(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(key(width, height, config));
+
+        return bitmap != null ? bitmap : borrowed(Bitmap.createBitmap(width, height, config));
+    }
+
+}
@@ -24,4 +24,19 @@ public class Utils {
         }
     }
 
+    /*
+     * Same as previewBitmap(mat), with the Bitmap borrowed from the pool.
+     */
+    public static Bitmap previewBitmap(@NonNull Mat mat, BitmapPool pool) {
+        if (mat != null && mat.width() > 0 && mat.height() > 0) {
+            Bitmap previewBitmap = pool.borrow(mat.width(), mat.height(), Bitmap.Config.RGB_565);
+            org.opencv.android.Utils.matToBitmap(mat, previewBitmap);
+
+            return previewBitmap;
+        }
+        else {
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,201 @@
+package com.angmolin.livechess2fen.classifier;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * ImageClassifier running on the OpenCV dnn module, for the JVM where the
+ * TensorFlow Lite interpreter is not available. The model is any format
+ * Dnn.readNet understands, e.g. the frozen graph the .tflite was built from.
+ *
+ * Inputs are prepared as in TFImageClassifier: resized to the input size,
+ * RGB(A) images give their last pixelSize channels, gray ones are
+ * replicated, and values are normalized to [0, 1].
+ *
+ * A Net is not thread safe, every thread needs its own classifier.
+ */
+public class DnnImageClassifier implements ImageClassifier {
+
+    private final Net net;
+
+    private final float confidenceThreshold;
+    private final int batchSize;
+    private final Size imageSize;
+    private final int pixelSize;
+    private final int modelIndices;
+
+    // Input slots of the batch, reused between calls
+    private final List<Mat> inputImages = new ArrayList<>();
+    private final Mat resizedImage = new Mat();
+    private float[] outputValues = new float[0];
+
+    public DnnImageClassifier(String path, float confidenceThreshold, int batchSize, Size imageSize, int pixelSize, int modelIndices) throws IOException {
+        if (pixelSize != 1 && pixelSize != 3) {
+            throw new IllegalArgumentException("Unsupported pixel size " + pixelSize);
+        }
+
+        if (!new File(path).isFile()) {
+            throw new FileNotFoundException(path);
+        }
+
+        this.confidenceThreshold = confidenceThreshold;
+        this.batchSize = batchSize;
+        this.imageSize = imageSize;
+        this.pixelSize = pixelSize;
+        this.modelIndices = modelIndices;
+
+        net = Dnn.readNet(path);
+
+        if (net.empty()) {
+            throw new IOException("Cannot read the model " + path);
+        }
+    }
+
+    @Override
+    public Size getInputSize() {
+        return imageSize;
+    }
+
+    private void convertMatToInput(Mat image, int index) {
+        while (inputImages.size() <= index) {
+            inputImages.add(new Mat());
+        }
+
+        Mat input = inputImages.get(index);
+
+        if (image.rows() != imageSize.height || image.cols() != imageSize.width) {
+            Imgproc.resize(image, resizedImage, imageSize, 0, 0, Imgproc.INTER_CUBIC);
+
+            image = resizedImage;
+        }
+
+        int channels = image.channels();
+
+        if (channels < 3) {
+            if (pixelSize == 1) {
+                image.copyTo(input);
+            }
+            else {
+                Imgproc.cvtColor(image, input, Imgproc.COLOR_GRAY2RGB);
+            }
+        }
+        else if (pixelSize == 1) {
+            Core.extractChannel(image, input, 2);
+        }
+        else if (channels == 4) {
+            Imgproc.cvtColor(image, input, Imgproc.COLOR_RGBA2RGB);
+        }
+        else {
+            image.copyTo(input);
+        }
+    }
+
+    /*
+     * One forward pass over the first n input slots, the probabilities are
+     * left in outputValues as a flat [n * modelIndices] tensor.
+     */
+    private void runInference(int n) {
+        Mat blob = Dnn.blobFromImages(inputImages.subList(0, n), 1.0 / 255.0, imageSize, new Scalar(0), false, false);
+        net.setInput(blob);
+        Mat output = net.forward();
+
+        if (outputValues.length != n * modelIndices) {
+            outputValues = new float[n * modelIndices];
+        }
+        output.get(0, 0, outputValues);
+
+        blob.release();
+        output.release();
+    }
+
+    private int getMaximum(int row) {
+        int maxIndex = -1;
+        float maxProb = confidenceThreshold;
+
+        for (int i = 0; i < modelIndices; i++) {
+            if (outputValues[row * modelIndices + i] >= maxProb) {
+                maxProb = outputValues[row * modelIndices + i];
+                maxIndex = i;
+            }
+        }
+
+        return maxIndex;
+    }
+
+    @Override
+    public int classifyAndGetMax(Mat image) {
+        convertMatToInput(image, 0);
+        runInference(1);
+
+        return getMaximum(0);
+    }
+
+    @Override
+    public float[] classifyAndGetResult(Mat image) {
+        convertMatToInput(image, 0);
+        runInference(1);
+
+        return outputValues.clone();
+    }
+
+    @Override
+    public float[] classifyBatch(List<Mat> images) {
+        float[] probabilities = new float[images.size() * modelIndices];
+
+        for (int offset = 0; offset < images.size(); offset += batchSize) {
+            int n = Math.min(batchSize, images.size() - offset);
+
+            for (int i = 0; i < n; i++) {
+                convertMatToInput(images.get(offset + i), i);
+            }
+
+            runInference(n);
+
+            System.arraycopy(outputValues, 0, probabilities, offset * modelIndices, n * modelIndices);
+        }
+
+        return probabilities;
+    }
+
+    @Override
+    public int[] classifyBatchAndGetMax(List<Mat> images) {
+        int[] maximums = new int[images.size()];
+
+        for (int offset = 0; offset < images.size(); offset += batchSize) {
+            int n = Math.min(batchSize, images.size() - offset);
+
+            for (int i = 0; i < n; i++) {
+                convertMatToInput(images.get(offset + i), i);
+            }
+
+            runInference(n);
+
+            for (int i = 0; i < n; i++) {
+                maximums[offset + i] = getMaximum(i);
+            }
+        }
+
+        return maximums;
+    }
+
+    public void release() {
+        for (Mat input : inputImages) {
+            input.release();
+        }
+
+        inputImages.clear();
+        resizedImage.release();
+    }
+
+}
@@ -0,0 +1,385 @@
+package com.angmolin.livechess2fen.cli;
+
+import com.angmolin.livechess2fen.Fen;
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+import com.angmolin.livechess2fen.classifier.DnnImageClassifier;
+import com.angmolin.livechess2fen.pipeline.BoardRecognizer;
+import com.angmolin.livechess2fen.pipeline.FrameJob;
+
+import nu.pattern.OpenCV;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Recognizes the boards of a set of images, e.g. photos or the frames of a
+ * recorded game, and writes one JSON line per image with its FEN and the
+ * time spent in every stage.
+ *
+ * Every worker thread owns its classifiers and its BoardRecognizer, so the
+ * only shared state is the next image index, the output and the report.
+ * The images are unrelated, the recognizer is reset before each one.
+ */
+public class BatchRecognition {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchRecognition.class.getName());
+
+    private static final String TAG = "BatchRecognition";
+
+    /* The .tflite models of the app cannot be read by the dnn module of OpenCV 3.4 */
+    private static final String usage = "usage: " + TAG + " --laps <model> --pieces <model> [--threads <n>]"
+            + " [--laps-threads <n>] [--cps-threads <n>] [--a1 BottomLeft|BottomRight|TopLeft|TopRight] [--output <file.jsonl>]"
+            + " <image|directory|@list>...\n"
+            + "  models are in a format Dnn.readNet reads, e.g. the frozen TensorFlow .pb graphs the .tflite"
+            + " models were converted from, not .tflite";
+
+    private static final List<String> imageExtensions = Arrays.asList("jpg", "jpeg", "png", "bmp", "tif", "tiff");
+
+    private final String lapsModel;
+    private final String piecesModel;
+    private final Fen.A1Pos a1Pos;
+    private final int threads;
+    private final int lapsThreads;
+    private final int cpsThreads;
+
+    private final List<File> images;
+    private final AtomicInteger nextImage = new AtomicInteger();
+
+    private final BatchReport report = new BatchReport();
+
+    private Writer output;
+
+    public BatchRecognition(String lapsModel, String piecesModel, Fen.A1Pos a1Pos, int threads, int lapsThreads, int cpsThreads, List<File> images) {
+        this.lapsModel = lapsModel;
+        this.piecesModel = piecesModel;
+        this.a1Pos = a1Pos;
+        this.threads = threads;
+        this.lapsThreads = lapsThreads;
+        this.cpsThreads = cpsThreads;
+        this.images = images;
+    }
+
+    public BatchReport getReport() {
+        return report;
+    }
+
+    /*
+     * Processes every image with the configured number of threads and
+     * returns once all of them are written.
+     */
+    public void run(Writer output) throws IOException, InterruptedException {
+        this.output = output;
+        nextImage.set(0);
+
+        List<Worker> workers = new ArrayList<>();
+
+        /* Models are loaded up front so a wrong path fails before any work */
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker());
+        }
+
+        List<Thread> threadList = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            Thread thread = new Thread(workers.get(i), TAG + "-" + i);
+            thread.start();
+
+            threadList.add(thread);
+        }
+
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+
+        output.flush();
+    }
+
+    private synchronized void writeLine(String line) {
+        try {
+            output.write(line);
+            output.write('\n');
+            output.flush();
+        }
+        catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot write the result", e);
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final DnnImageClassifier lapsClassifier;
+        private final DnnImageClassifier piecesClassifier;
+        private final ChessboardDetector detector;
+        private final BoardRecognizer recognizer;
+
+        private final Mat rgbaImage = new Mat();
+        private final long[] stageTimes = new long[BatchReport.stages.length];
+
+        Worker() throws IOException {
+            /* Same parameters as the classifiers of the app */
+            lapsClassifier = new DnnImageClassifier(lapsModel, 0.5f, 64, new Size(21, 21), 1, 2);
+            piecesClassifier = new DnnImageClassifier(piecesModel, 0.5f, 64, new Size(224, 224), 3, 13);
+
+            detector = new ChessboardDetector(lapsClassifier);
+            detector.setLapsParallelism(lapsThreads);
+            detector.setCpsParallelism(cpsThreads);
+
+            recognizer = new BoardRecognizer(detector, piecesClassifier, a1Pos);
+        }
+
+        @Override
+        public void run() {
+            int index;
+
+            while ((index = nextImage.getAndIncrement()) < images.size()) {
+                process(index, images.get(index));
+            }
+
+            detector.shutdown();
+            lapsClassifier.release();
+            piecesClassifier.release();
+            rgbaImage.release();
+        }
+
+        private void process(int index, File image) {
+            long startTime = FrameJob.uptimeMillis();
+
+            FrameJob job = null;
+
+            try {
+                /* The pipeline expects RGBA frames, as the camera delivers them */
+                Mat bgrImage = Imgcodecs.imread(image.getPath());
+                if (bgrImage.empty()) {
+                    report.fail();
+                    writeLine(errorLine(index, image, "Cannot read the image"));
+                    return;
+                }
+
+                Imgproc.cvtColor(bgrImage, rgbaImage, Imgproc.COLOR_BGR2RGBA);
+                bgrImage.release();
+
+                long loadTime = FrameJob.uptimeMillis() - startTime;
+
+                recognizer.reset();
+                job = recognizer.recognize(rgbaImage);
+
+                stageTimes[0] = loadTime;
+                stageTimes[1] = job.detectTime;
+                stageTimes[2] = job.splitTime;
+                stageTimes[3] = job.classifyTime;
+                stageTimes[4] = job.inferTime;
+
+                long latency = job.finishTimestamp - startTime;
+
+                report.record(stageTimes, latency);
+                writeLine(resultLine(index, image, job.fen, stageTimes, latency));
+            }
+            catch (Throwable e) {
+                /* Errors too, e.g. a native library mismatch, so one image does not stop the worker */
+                LOGGER.log(Level.WARNING, "Cannot recognize " + image, e);
+
+                report.fail();
+                writeLine(errorLine(index, image, String.valueOf(e)));
+            }
+            finally {
+                if (job != null) {
+                    job.release();
+                }
+            }
+        }
+
+    }
+
+    static String resultLine(int index, File image, String fen, long[] stageTimes, long latency) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("{\"index\":").append(index);
+        builder.append(",\"image\":").append(quote(image.getPath()));
+        builder.append(",\"fen\":").append(quote(fen));
+
+        for (int i = 0; i < BatchReport.stages.length; i++) {
+            builder.append(",\"").append(BatchReport.stages[i]).append("_ms\":").append(stageTimes[i]);
+        }
+
+        builder.append(",\"latency_ms\":").append(latency).append('}');
+
+        return builder.toString();
+    }
+
+    static String errorLine(int index, File image, String error) {
+        return "{\"index\":" + index + ",\"image\":" + quote(image.getPath()) + ",\"error\":" + quote(error) + "}";
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int)c));
+                    }
+                    else {
+                        builder.append(c);
+                    }
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+
+    /*
+     * Directories give their images sorted by name, @file gives the paths
+     * listed in the file, one per line, anything else is an image path.
+     */
+    static List<File> collectImages(List<String> arguments) throws IOException {
+        List<File> images = new ArrayList<>();
+
+        for (String argument : arguments) {
+            if (argument.startsWith("@")) {
+                for (String line : Files.readAllLines(new File(argument.substring(1)).toPath(), StandardCharsets.UTF_8)) {
+                    line = line.trim();
+
+                    if (!line.isEmpty()) {
+                        images.add(new File(line));
+                    }
+                }
+            }
+            else if (new File(argument).isDirectory()) {
+                File[] files = new File(argument).listFiles();
+
+                if (files == null) {
+                    throw new IOException("Cannot list " + argument);
+                }
+
+                Arrays.sort(files);
+
+                for (File file : files) {
+                    if (file.isFile() && isImage(file)) {
+                        images.add(file);
+                    }
+                }
+            }
+            else {
+                images.add(new File(argument));
+            }
+        }
+
+        return images;
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+
+        return dot >= 0 && imageExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.US));
+    }
+
+    private static void exitWithUsage() {
+        System.err.println(usage);
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String lapsModel = null;
+        String piecesModel = null;
+        String outputPath = "recognition.jsonl";
+        Fen.A1Pos a1Pos = Fen.A1Pos.BottomLeft;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int lapsThreads = 1;
+        int cpsThreads = 1;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--laps":
+                        lapsModel = args[++i];
+                        break;
+                    case "--pieces":
+                        piecesModel = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--laps-threads":
+                        lapsThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--cps-threads":
+                        cpsThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--a1":
+                        a1Pos = Fen.A1Pos.valueOf(args[++i]);
+                        break;
+                    case "--output":
+                        outputPath = args[++i];
+                        break;
+                    default:
+                        inputs.add(args[i]);
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            exitWithUsage();
+        }
+
+        if (lapsModel == null || piecesModel == null || threads < 1 || lapsThreads < 1 || cpsThreads < 1 || inputs.isEmpty()) {
+            exitWithUsage();
+        }
+
+        OpenCV.loadLocally();
+
+        List<File> images = collectImages(inputs);
+        BatchRecognition batch = new BatchRecognition(lapsModel, piecesModel, a1Pos, Math.min(threads, Math.max(images.size(), 1)), lapsThreads, cpsThreads, images);
+
+        long startTime = FrameJob.uptimeMillis();
+
+        try (Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8))) {
+            batch.run(output);
+        }
+
+        long elapsedTime = FrameJob.uptimeMillis() - startTime;
+
+        System.out.print(batch.getReport().summary(elapsedTime, batch.threads));
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.angmolin.livechess2fen.cli;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * Aggregated timings of a batch run, shared by every worker.
+ */
+public class BatchReport {
+
+    public static final String[] stages = { "load", "detect", "split", "classify", "infer" };
+
+    private final long[] stageTotals = new long[stages.length];
+
+    private long[] latencies = new long[64];
+    private int processed = 0;
+    private int failed = 0;
+
+    /*
+     * stageTimes in the order of stages, latency is the time from reading
+     * the image to having its FEN, all in milliseconds.
+     */
+    public synchronized void record(long[] stageTimes, long latency) {
+        for (int i = 0; i < stages.length; i++) {
+            stageTotals[i] += stageTimes[i];
+        }
+
+        if (processed == latencies.length) {
+            latencies = Arrays.copyOf(latencies, processed * 2);
+        }
+
+        latencies[processed++] = latency;
+    }
+
+    public synchronized void fail() {
+        failed++;
+    }
+
+    public synchronized int getProcessed() {
+        return processed;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    /*
+     * Nearest rank percentile of the recorded latencies, 0 if there are none.
+     */
+    public synchronized long latencyPercentile(double percentile) {
+        if (processed == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, processed);
+        Arrays.sort(sorted);
+
+        return percentile(sorted, percentile);
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        int rank = (int)Math.ceil(percentile / 100.0 * sorted.length);
+
+        return sorted[Math.min(Math.max(rank - 1, 0), sorted.length - 1)];
+    }
+
+    public synchronized double stageMean(int stage) {
+        return processed == 0 ? 0 : (double)stageTotals[stage] / processed;
+    }
+
+    /*
+     * Images per second over the wall time of the run, failed images count
+     * since the workers spent their time on them too.
+     */
+    public synchronized double throughput(long elapsedMillis) {
+        return elapsedMillis <= 0 ? 0 : (processed + failed) * 1000.0 / elapsedMillis;
+    }
+
+    public synchronized String summary(long elapsedMillis, int workers) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(String.format(Locale.US, "%d images, %d failed, %d workers, %.1f s, %.2f images/s%n",
+                processed + failed, failed, workers, elapsedMillis / 1000.0, throughput(elapsedMillis)));
+
+        builder.append(String.format(Locale.US, "latency ms: p50 %d, p90 %d, p99 %d, max %d%n",
+                latencyPercentile(50), latencyPercentile(90), latencyPercentile(99), latencyPercentile(100)));
+
+        builder.append("mean stage ms:");
+        for (int i = 0; i < stages.length; i++) {
+            builder.append(String.format(Locale.US, " %s %.1f", stages[i], stageMean(i)));
+        }
+        builder.append(String.format("%n"));
+
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.angmolin.livechess2fen.cli;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BatchReportTest {
+
+    @Test
+    public void percentilesUseTheNearestRank() {
+        BatchReport report = new BatchReport();
+
+        for (int latency = 100; latency >= 1; latency--) {
+            report.record(new long[BatchReport.stages.length], latency);
+        }
+
+        assertEquals(50, report.latencyPercentile(50));
+        assertEquals(90, report.latencyPercentile(90));
+        assertEquals(99, report.latencyPercentile(99));
+        assertEquals(100, report.latencyPercentile(100));
+        assertEquals(1, report.latencyPercentile(0));
+    }
+
+    @Test
+    public void throughputCountsFailedImages() {
+        BatchReport report = new BatchReport();
+
+        report.record(new long[] { 1, 2, 3, 4, 5 }, 15);
+        report.record(new long[] { 3, 4, 5, 6, 7 }, 25);
+        report.fail();
+
+        assertEquals(2, report.getProcessed());
+        assertEquals(1, report.getFailed());
+        assertEquals(3.0, report.throughput(1000), 1e-9);
+        assertEquals(3.0, report.stageMean(1), 1e-9);
+        assertEquals(0, new BatchReport().latencyPercentile(50));
+    }
+
+    @Test
+    public void resultLinesAreJson() {
+        String line = BatchRecognition.resultLine(3, new File("games/a \"b\".jpg"), "8/8/8/8/8/8/8/8", new long[] { 1, 2, 3, 4, 5 }, 16);
+
+        assertEquals("{\"index\":3,\"image\":\"games/a \\\"b\\\".jpg\",\"fen\":\"8/8/8/8/8/8/8/8\","
+                + "\"load_ms\":1,\"detect_ms\":2,\"split_ms\":3,\"classify_ms\":4,\"infer_ms\":5,\"latency_ms\":16}", line);
+
+        assertEquals("\"a\\\\b\\n\\u0001\"", BatchRecognition.quote("a\\b\n\u0001"));
+        assertEquals("null", BatchRecognition.quote(null));
+    }
+
+}
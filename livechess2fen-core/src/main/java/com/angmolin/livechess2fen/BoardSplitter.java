@@ -1,5 +1,7 @@
 package com.angmolin.livechess2fen;
 
+import com.angmolin.livechess2fen.types.MatArena;
+
 import org.opencv.core.Mat;
 
 import java.util.ArrayList;
@@ -19,12 +21,12 @@ public class BoardSplitter {
         double squareSize = image.rows() / numSquares;
         for (int i = 0; i < image.rows(); i += squareSize) {
             for (int j = 0; j < image.cols(); j += squareSize) {
-                Mat square = image.submat(
+                Mat square = MatArena.track(image.submat(
                         i,
                         (int)(i + squareSize),
                         j,
                         (int)(j + squareSize)
-                );
+                ));
 
                 squares.add(square);
             }
@@ -48,12 +50,12 @@ public class BoardSplitter {
                     height = Math.min((int)blCorner[1], (int)brCorner[1]);
                 }
 
-                Mat square = image.submat(
+                Mat square = MatArena.track(image.submat(
                         (int)(blCorner[1] - height),
                         (int)(blCorner[1]),
                         (int)(blCorner[0]),
                         (int)(brCorner[0])
-                );
+                ));
 
                 squares.add(square);
             }
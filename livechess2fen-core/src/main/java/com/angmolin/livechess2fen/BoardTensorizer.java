@@ -0,0 +1,159 @@
+package com.angmolin.livechess2fen;
+
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+import com.angmolin.livechess2fen.types.ImageObject;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/*
+ * Warps every square of the board straight from the camera frame at the
+ * input size of the classifier, so its pixels are resampled once instead
+ * of by the board warp and then by the classifier resize.
+ *
+ * With cropHeight above 1 the crops grow upwards from the bottom of the
+ * square, as BoardSplitter.splitBoardImage does to fit the piece height.
+ */
+public class BoardTensorizer {
+
+    private static final int numSquares = 8;
+
+    private final Size inputSize;
+    private final double cropHeight;
+
+    // One per square, reused by every frame
+    private final Mat[] squareMats = new Mat[numSquares * numSquares];
+    private final Mat squareTransform = new Mat(3, 3, CvType.CV_64F);
+    private final double[] transform = new double[9];
+
+    private long warpNanos = 0;
+
+    public BoardTensorizer(Size inputSize, double cropHeight) {
+        this.inputSize = inputSize;
+        this.cropHeight = cropHeight;
+    }
+
+    public BoardTensorizer(Size inputSize) {
+        this(inputSize, 1.0);
+    }
+
+    /*
+     * Time spent warping squares so far, in nanoseconds. It grows on the
+     * thread reading the lists, which compares it before and after.
+     */
+    public long getWarpNanos() {
+        return warpNanos;
+    }
+
+    /*
+     * Squares in the order of BoardSplitter.splitSquaresFromBoardImage.
+     * They are warped when the list is read, into Mats reused by the next
+     * call, so the list has to be read from a single thread before it.
+     */
+    public List<Mat> squares(ImageObject imageObject) {
+        Mat source;
+        double[] inverse;
+
+        if (imageObject.getHomography() != null) {
+            double[] homography = new double[9];
+            imageObject.getHomography().get(0, 0, homography);
+
+            source = imageObject.first().original;
+            inverse = invert(homography);
+        }
+        else {
+            // No board found, the image itself is split as the board
+            source = imageObject.last().original;
+
+            if (source.rows() != source.cols()) {
+                throw new IllegalArgumentException("Mat rows should be equal to cols");
+            }
+
+            double scale = (double) source.cols() / ChessboardDetector.boardLength;
+            inverse = new double[] { scale, 0, 0, 0, scale, 0, 0, 0, 1 };
+        }
+
+        return new AbstractList<Mat>() {
+            @Override
+            public Mat get(int index) {
+                return warpSquare(source, inverse, index);
+            }
+
+            @Override
+            public int size() {
+                return squareMats.length;
+            }
+        };
+    }
+
+    private Mat warpSquare(Mat source, double[] inverse, int index) {
+        long startTime = System.nanoTime();
+
+        double side = (double) ChessboardDetector.boardLength / numSquares;
+
+        double x = side * (index % numSquares);
+        double bottom = side * (index / numSquares + 1);
+        double top = Math.max(0, bottom - side * cropHeight);
+
+        cropTransform(inverse, x, top, side, bottom - top, inputSize.width, inputSize.height, transform);
+        squareTransform.put(0, 0, transform);
+
+        if (squareMats[index] == null) {
+            squareMats[index] = new Mat((int) inputSize.height, (int) inputSize.width, source.type());
+        }
+
+        Imgproc.warpPerspective(source, squareMats[index], squareTransform, inputSize, Imgproc.INTER_CUBIC | Imgproc.WARP_INVERSE_MAP);
+
+        warpNanos += System.nanoTime() - startTime;
+
+        return squareMats[index];
+    }
+
+    /*
+     * Map from the pixels of a width x height image to the frame, through
+     * the rectangle (x, y, w, h) of the board. Pixel centres are aligned as
+     * Imgproc.resize does.
+     */
+    static void cropTransform(double[] inverse, double x, double y, double w, double h, double width, double height, double[] out) {
+        double sx = w / width;
+        double sy = h / height;
+        double tx = x + 0.5 * sx - 0.5;
+        double ty = y + 0.5 * sy - 0.5;
+
+        for (int row = 0; row < 3; row++) {
+            double a = inverse[3 * row];
+            double b = inverse[3 * row + 1];
+            double c = inverse[3 * row + 2];
+
+            out[3 * row] = a * sx;
+            out[3 * row + 1] = b * sy;
+            out[3 * row + 2] = a * tx + b * ty + c;
+        }
+    }
+
+    static double[] invert(double[] m) {
+        double c0 = m[4] * m[8] - m[5] * m[7];
+        double c1 = m[5] * m[6] - m[3] * m[8];
+        double c2 = m[3] * m[7] - m[4] * m[6];
+
+        double determinant = m[0] * c0 + m[1] * c1 + m[2] * c2;
+
+        if (determinant == 0) {
+            throw new IllegalArgumentException("Board homography is singular");
+        }
+
+        double d = 1 / determinant;
+
+        return new double[] {
+                c0 * d, (m[2] * m[7] - m[1] * m[8]) * d, (m[1] * m[5] - m[2] * m[4]) * d,
+                c1 * d, (m[0] * m[8] - m[2] * m[6]) * d, (m[2] * m[3] - m[0] * m[5]) * d,
+                c2 * d, (m[1] * m[6] - m[0] * m[7]) * d, (m[0] * m[4] - m[1] * m[3]) * d
+        };
+    }
+
+}
@@ -1,6 +1,6 @@
 package com.angmolin.livechess2fen;
 
-import android.util.Pair;
+import com.angmolin.livechess2fen.types.Pair;
 
 import java.util.ArrayList;
 import java.util.Collections;
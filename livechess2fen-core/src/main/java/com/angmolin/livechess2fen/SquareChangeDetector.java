@@ -0,0 +1,173 @@
+package com.angmolin.livechess2fen;
+
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SquareChangeDetector {
+
+    private static final int numSquares = 8;
+
+    private final int thumbnailSize;
+    private final double threshold;
+
+    private final Mat grayBoard = new Mat();
+    private final Mat thumbnailBoard = new Mat();
+    private final Size thumbnailBoardSize;
+
+    private final byte[] currentThumbnails;
+    private final byte[] referenceThumbnails;
+    private final boolean[] hasReference = new boolean[numSquares * numSquares];
+
+    private final float[][] cachedResults = new float[numSquares * numSquares][];
+
+    private int lastChangedSquares = 0;
+    private long totalSquares = 0;
+    private long reusedSquares = 0;
+
+    /*
+     * Every square of the warped board is reduced to a thumbnailSize x thumbnailSize
+     * gray thumbnail. A square is considered changed when the mean absolute
+     * difference against its reference thumbnail is above threshold (in gray
+     * levels). The reference is the thumbnail the square had when it was last
+     * classified, so slow drift adds up until the square is classified again.
+     */
+    public SquareChangeDetector(int thumbnailSize, double threshold) {
+        this.thumbnailSize = thumbnailSize;
+        this.threshold = threshold;
+
+        thumbnailBoardSize = new Size(numSquares * thumbnailSize, numSquares * thumbnailSize);
+        currentThumbnails = new byte[numSquares * numSquares * thumbnailSize * thumbnailSize];
+        referenceThumbnails = new byte[currentThumbnails.length];
+    }
+
+    public SquareChangeDetector() {
+        this(8, 6.0);
+    }
+
+    public void reset() {
+        for (int i = 0; i < cachedResults.length; i++) {
+            hasReference[i] = false;
+            cachedResults[i] = null;
+        }
+    }
+
+    private int squareOrigin(int square) {
+        return (square / numSquares) * thumbnailSize * numSquares * thumbnailSize + (square % numSquares) * thumbnailSize;
+    }
+
+    /*
+     * Compares the squares of the board with their references, which are
+     * only updated by updateReference.
+     */
+    public boolean[] detectChanges(Mat board) {
+        if (board.channels() > 1) {
+            Imgproc.cvtColor(board, grayBoard, Imgproc.COLOR_RGBA2GRAY);
+        }
+        else {
+            board.copyTo(grayBoard);
+        }
+
+        Imgproc.resize(grayBoard, thumbnailBoard, thumbnailBoardSize, 0, 0, Imgproc.INTER_AREA);
+        thumbnailBoard.get(0, 0, currentThumbnails);
+
+        int rowStride = numSquares * thumbnailSize;
+        int squarePixels = thumbnailSize * thumbnailSize;
+
+        boolean[] changed = new boolean[numSquares * numSquares];
+
+        for (int square = 0; square < changed.length; square++) {
+            if (!hasReference[square]) {
+                changed[square] = true;
+                continue;
+            }
+
+            int origin = squareOrigin(square);
+
+            int difference = 0;
+            for (int i = 0; i < thumbnailSize; i++) {
+                int offset = origin + i * rowStride;
+
+                for (int j = 0; j < thumbnailSize; j++) {
+                    difference += Math.abs((currentThumbnails[offset + j] & 0xFF) - (referenceThumbnails[offset + j] & 0xFF));
+                }
+            }
+
+            changed[square] = (double) difference / squarePixels > threshold;
+        }
+
+        return changed;
+    }
+
+    /*
+     * Takes the thumbnail of the square in the last board given to
+     * detectChanges as its new reference.
+     */
+    public void updateReference(int square) {
+        int rowStride = numSquares * thumbnailSize;
+        int origin = squareOrigin(square);
+
+        for (int i = 0; i < thumbnailSize; i++) {
+            int offset = origin + i * rowStride;
+
+            System.arraycopy(currentThumbnails, offset, referenceThumbnails, offset, thumbnailSize);
+        }
+
+        hasReference[square] = true;
+    }
+
+    /*
+     * Only the squares that changed since they were last classified (or that
+     * have never been classified) are sent to the classifier, the rest reuse
+     * their cached probability vectors.
+     */
+    public float[][] classify(ImageClassifier classifier, Mat board, List<Mat> squares) {
+        boolean[] changed = detectChanges(board);
+
+        List<Mat> changedSquares = new ArrayList<>();
+        List<Integer> changedIndices = new ArrayList<>();
+
+        for (int i = 0; i < squares.size(); i++) {
+            if (changed[i] || cachedResults[i] == null) {
+                changedSquares.add(squares.get(i));
+                changedIndices.add(i);
+            }
+        }
+
+        if (changedSquares.size() > 0) {
+            float[] probabilities = classifier.classifyBatch(changedSquares);
+            int modelIndices = probabilities.length / changedSquares.size();
+
+            for (int i = 0; i < changedIndices.size(); i++) {
+                float[] result = new float[modelIndices];
+                System.arraycopy(probabilities, i * modelIndices, result, 0, modelIndices);
+
+                cachedResults[changedIndices.get(i)] = result;
+                updateReference(changedIndices.get(i));
+            }
+        }
+
+        lastChangedSquares = changedSquares.size();
+        totalSquares += squares.size();
+        reusedSquares += squares.size() - changedSquares.size();
+
+        float[][] results = new float[squares.size()][];
+        System.arraycopy(cachedResults, 0, results, 0, squares.size());
+
+        return results;
+    }
+
+    public int getLastChangedSquares() {
+        return lastChangedSquares;
+    }
+
+    public double getHitRatio() {
+        return totalSquares > 0 ? (double) reusedSquares / totalSquares : 0;
+    }
+
+}
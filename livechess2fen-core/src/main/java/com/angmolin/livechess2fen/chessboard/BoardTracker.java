@@ -0,0 +1,276 @@
+package com.angmolin.livechess2fen.chessboard;
+
+import com.angmolin.livechess2fen.types.ComplexMat;
+import com.angmolin.livechess2fen.types.MatArena;
+import com.angmolin.livechess2fen.types.Pair;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BoardTracker {
+
+    public enum State {
+        SEARCHING,
+        TRACKING,
+        LOST
+    }
+
+    private static final Size windowSize = new Size(21, 21);
+    private static final int pyramidLevels = 3;
+    private static final TermCriteria termCriteria = new TermCriteria(TermCriteria.COUNT + TermCriteria.EPS, 20, 0.03);
+
+    private final double minConfidence;
+    private final double maxForwardBackwardError;
+    private final double reprojectionThreshold;
+
+    private State state = State.SEARCHING;
+    private double confidence = 0;
+
+    private Mat previousGray = new Mat();
+    private Mat currentGray = new Mat();
+
+    // Board coordinates of the tracked points: 4 outer corners + 49 inner corners
+    private final double[] boardPoints;
+    private double[] previousPoints;
+
+    private List<double[]> lastFourPoints;
+    private Pair<List<double[]>, List<double[]>> lastCorners;
+
+    /*
+     * minConfidence: fraction of the tracked points that must be homography
+     * inliers to keep tracking.
+     * maxForwardBackwardError and reprojectionThreshold are measured in
+     * pixels of the downscaled frame.
+     */
+    public BoardTracker(double minConfidence, double maxForwardBackwardError, double reprojectionThreshold) {
+        this.minConfidence = minConfidence;
+        this.maxForwardBackwardError = maxForwardBackwardError;
+        this.reprojectionThreshold = reprojectionThreshold;
+
+        int boardLength = ChessboardDetector.boardLength;
+        int step = boardLength / 8;
+
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[] {           0,           0 });
+        points.add(new double[] { boardLength,           0 });
+        points.add(new double[] { boardLength, boardLength });
+        points.add(new double[] {           0, boardLength });
+        for (int rowCorner = step; rowCorner < boardLength; rowCorner += step) {
+            for (int colCorner = step; colCorner < boardLength; colCorner += step) {
+                points.add(new double[] { rowCorner, colCorner });
+            }
+        }
+
+        boardPoints = new double[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            boardPoints[2 * i] = points.get(i)[0];
+            boardPoints[2 * i + 1] = points.get(i)[1];
+        }
+    }
+
+    public BoardTracker() {
+        this(0.6, 1.0, 3.0);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public List<double[]> getLastFourPoints() {
+        return lastFourPoints;
+    }
+
+    public Pair<List<double[]>, List<double[]>> getLastCorners() {
+        return lastCorners;
+    }
+
+    /*
+     * Starts tracking from a full detection. corners holds the four outer
+     * corners and the 49 inner corners in original frame coordinates, as
+     * returned by ChessboardDetector.computeCorners.
+     */
+    public void initialize(ComplexMat frame, Pair<List<double[]>, List<double[]>> corners) {
+        if (corners.first.size() != 4 || corners.second.size() != 49) {
+            state = State.SEARCHING;
+            return;
+        }
+
+        toGray(frame.downscaled, previousGray);
+
+        previousPoints = new double[boardPoints.length];
+        int i = 0;
+        for (double[] point : corners.first) {
+            previousPoints[i++] = point[0] * frame.scale;
+            previousPoints[i++] = point[1] * frame.scale;
+        }
+        for (double[] point : corners.second) {
+            previousPoints[i++] = point[0] * frame.scale;
+            previousPoints[i++] = point[1] * frame.scale;
+        }
+
+        lastFourPoints = corners.first;
+        lastCorners = corners;
+        confidence = 1;
+        state = State.TRACKING;
+    }
+
+    public void lose() {
+        if (state == State.TRACKING) {
+            state = State.LOST;
+        }
+    }
+
+    public void reset() {
+        state = State.SEARCHING;
+        confidence = 0;
+        lastFourPoints = null;
+        lastCorners = null;
+    }
+
+    /*
+     * Follows the tracked points into the new frame with pyramidal
+     * Lucas-Kanade and fits the board homography to the surviving points.
+     * Returns the four outer corners in original frame coordinates, or
+     * null if the confidence dropped below the threshold (state LOST).
+     */
+    public List<double[]> track(ComplexMat frame) {
+        if (state != State.TRACKING) {
+            return null;
+        }
+
+        toGray(frame.downscaled, currentGray);
+
+        int n = boardPoints.length / 2;
+
+        MatOfPoint2f previousMat = MatArena.track(new MatOfPoint2f());
+        previousMat.alloc(n);
+        previousMat.put(0, 0, previousPoints);
+
+        MatOfPoint2f nextMat = MatArena.track(new MatOfPoint2f());
+        MatOfByte status = MatArena.track(new MatOfByte());
+        MatOfFloat error = MatArena.track(new MatOfFloat());
+        /* Full overloads with the OpenCV defaults, the shorter ones differ between 3.4.2 and 3.4.3 */
+        Video.calcOpticalFlowPyrLK(previousGray, currentGray, previousMat, nextMat, status, error, windowSize, pyramidLevels, termCriteria, 0, 1e-4);
+
+        MatOfPoint2f backMat = MatArena.track(new MatOfPoint2f());
+        MatOfByte backStatus = MatArena.track(new MatOfByte());
+        MatOfFloat backError = MatArena.track(new MatOfFloat());
+        Video.calcOpticalFlowPyrLK(currentGray, previousGray, nextMat, backMat, backStatus, backError, windowSize, pyramidLevels, termCriteria, 0, 1e-4);
+
+        float[] next = new float[n * 2];
+        float[] back = new float[n * 2];
+        byte[] forwardValid = new byte[n];
+        byte[] backwardValid = new byte[n];
+        nextMat.get(0, 0, next);
+        backMat.get(0, 0, back);
+        status.get(0, 0, forwardValid);
+        backStatus.get(0, 0, backwardValid);
+
+        List<org.opencv.core.Point> sourcePoints = new ArrayList<>();
+        List<org.opencv.core.Point> trackedPoints = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            if (forwardValid[i] == 0 || backwardValid[i] == 0) {
+                continue;
+            }
+
+            double dx = back[2 * i] - previousPoints[2 * i];
+            double dy = back[2 * i + 1] - previousPoints[2 * i + 1];
+
+            if (dx * dx + dy * dy > maxForwardBackwardError * maxForwardBackwardError) {
+                continue;
+            }
+
+            sourcePoints.add(new org.opencv.core.Point(boardPoints[2 * i], boardPoints[2 * i + 1]));
+            trackedPoints.add(new org.opencv.core.Point(next[2 * i], next[2 * i + 1]));
+        }
+
+        if (trackedPoints.size() < 8) {
+            return lost();
+        }
+
+        Mat inliers = MatArena.track(new Mat());
+        Mat homography = MatArena.track(Calib3d.findHomography(
+                MatArena.track(new MatOfPoint2f(sourcePoints.toArray(new org.opencv.core.Point[0]))),
+                MatArena.track(new MatOfPoint2f(trackedPoints.toArray(new org.opencv.core.Point[0]))),
+                Calib3d.RANSAC,
+                reprojectionThreshold,
+                inliers,
+                2000,
+                0.995
+        ));
+
+        if (homography.empty()) {
+            return lost();
+        }
+
+        confidence = (double) Core.countNonZero(inliers) / n;
+        if (confidence < minConfidence) {
+            return lost();
+        }
+
+        Mat boardMat = MatArena.track(new Mat(n, 1, CvType.CV_64FC2));
+        boardMat.put(0, 0, boardPoints);
+        Mat projectedMat = MatArena.track(new Mat());
+        Core.perspectiveTransform(boardMat, projectedMat, homography);
+
+        double[] projected = new double[n * 2];
+        projectedMat.get(0, 0, projected);
+
+        List<double[]> fourPoints = new ArrayList<>();
+        List<double[]> corners = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] point = new double[] { projected[2 * i] / frame.scale, projected[2 * i + 1] / frame.scale };
+
+            if (i < 4) {
+                fourPoints.add(point);
+            }
+            else {
+                corners.add(point);
+            }
+        }
+
+        // Re-seed every point from the homography so lost points come back
+        previousPoints = projected;
+
+        Mat swap = previousGray;
+        previousGray = currentGray;
+        currentGray = swap;
+
+        lastFourPoints = fourPoints;
+        lastCorners = new Pair<>(fourPoints, corners);
+
+        return fourPoints;
+    }
+
+    private List<double[]> lost() {
+        state = State.LOST;
+        return null;
+    }
+
+    private static void toGray(Mat image, Mat gray) {
+        if (image.channels() > 1) {
+            Imgproc.cvtColor(image, gray, Imgproc.COLOR_RGBA2GRAY);
+        }
+        else {
+            image.copyTo(gray);
+        }
+    }
+
+}
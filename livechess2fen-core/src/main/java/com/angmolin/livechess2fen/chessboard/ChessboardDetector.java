@@ -1,9 +1,9 @@
 package com.angmolin.livechess2fen.chessboard;
 
-import android.util.Pair;
-
 import com.angmolin.livechess2fen.classifier.ImageClassifier;
 import com.angmolin.livechess2fen.types.ImageObject;
+import com.angmolin.livechess2fen.types.MatArena;
+import com.angmolin.livechess2fen.types.Pair;
 
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
@@ -23,19 +23,57 @@ import java.util.List;
 public class ChessboardDetector {
 
     public static final int boardLength = 1200;
+    public static final int downscaledLength = 500;
 
     public final Slid slid;
     public final Laps laps;
+    public final Cps cps;
+    public final BoardTracker tracker;
 
     public ChessboardDetector(ImageClassifier lapsClassifier) {
         slid = new Slid();
         laps = new Laps(lapsClassifier);
+        cps = new Cps();
+        tracker = new BoardTracker();
+    }
+
+    /*
+     * Number of threads Laps uses to analyze the candidate points, 1 (the
+     * default) analyzes them on the detecting thread.
+     */
+    public void setLapsParallelism(int parallelism) {
+        laps.setParallelism(parallelism);
+    }
+
+    /*
+     * Number of threads Slid runs its CLAHE settings on, 1 (the default)
+     * runs them on the detecting thread.
+     */
+    public void setSlidParallelism(int parallelism) {
+        slid.setParallelism(parallelism);
+    }
+
+    /*
+     * Number of threads Cps scores the candidate quads on, 1 (the default)
+     * scores them on the detecting thread.
+     */
+    public void setCpsParallelism(int parallelism) {
+        cps.setParallelism(parallelism);
+    }
+
+    /*
+     * Stops the threads started by the set*Parallelism methods.
+     */
+    public void shutdown() {
+        slid.shutdown();
+        laps.shutdown();
+        cps.shutdown();
     }
 
     private Pair<List<double[]>, List<double[]>> originalPointsCoords(List<List<double[]>> points) {
         Size warpedSize = new Size(this.boardLength, this.boardLength);
 
-        Mat toPerspective = new Mat(4, 1, CvType.CV_32FC2);
+        Mat toPerspective = MatArena.track(new Mat(4, 1, CvType.CV_32FC2));
         toPerspective.put(0, 0,
                        0.0,              0.0,
                 this.boardLength,              0.0,
@@ -50,7 +88,7 @@ public class ChessboardDetector {
             List<double[]> fourPoints = points.get(i);
 
             if (fourPoints.size() > 0) {
-                Mat fromPerspective = new Mat(4, 1, CvType.CV_32FC2);
+                Mat fromPerspective = MatArena.track(new Mat(4, 1, CvType.CV_32FC2));
                 fromPerspective.put(0, 0,
                         fourPoints.get(0)[0], fourPoints.get(0)[1],
                         fourPoints.get(1)[0], fourPoints.get(1)[1],
@@ -58,7 +96,7 @@ public class ChessboardDetector {
                         fourPoints.get(3)[0], fourPoints.get(3)[1]
                 );
 
-                perspectiveTransform = Imgproc.getPerspectiveTransform(fromPerspective, toPerspective);
+                perspectiveTransform = MatArena.track(Imgproc.getPerspectiveTransform(fromPerspective, toPerspective));
 
                 Core.invert(perspectiveTransform, perspectiveTransform);
                 transformMatrices.add(perspectiveTransform);
@@ -68,12 +106,12 @@ public class ChessboardDetector {
         if (transformMatrices.size() > 0) {
             perspectiveTransform = transformMatrices.get(0);
             for (int i = 1; i < transformMatrices.size(); i++) {
-                Core.gemm(transformMatrices.get(i), perspectiveTransform, 1.0, new Mat(), 0.0, perspectiveTransform);
+                Core.gemm(transformMatrices.get(i), perspectiveTransform, 1.0, MatArena.track(new Mat()), 0.0, perspectiveTransform);
             }
 
             List<double[]> lastPoints = points.get(points.size() - 1);
 
-            Mat lastPointsMat = new Mat(4, 1, CvType.CV_32FC2);
+            Mat lastPointsMat = MatArena.track(new Mat(4, 1, CvType.CV_32FC2));
             lastPointsMat.put(0, 0,
                     lastPoints.get(0)[0], lastPoints.get(0)[1],
                     lastPoints.get(1)[0], lastPoints.get(1)[1],
@@ -81,12 +119,12 @@ public class ChessboardDetector {
                     lastPoints.get(3)[0], lastPoints.get(3)[1]
             );
 
-            Mat lastPointsOut = new Mat();
+            Mat lastPointsOut = MatArena.track(new Mat());
             Core.perspectiveTransform(lastPointsMat, lastPointsOut, perspectiveTransform);
 
-            Mat lastPerspectiveTransform = Imgproc.getPerspectiveTransform(lastPointsMat, toPerspective);
+            Mat lastPerspectiveTransform = MatArena.track(Imgproc.getPerspectiveTransform(lastPointsMat, toPerspective));
             Core.invert(lastPerspectiveTransform, lastPerspectiveTransform);
-            Core.gemm(lastPerspectiveTransform, perspectiveTransform, 1.0, new Mat(), 0.0, perspectiveTransform);
+            Core.gemm(lastPerspectiveTransform, perspectiveTransform, 1.0, MatArena.track(new Mat()), 0.0, perspectiveTransform);
 
             List<double[]> corners = new LinkedList<>();
             int step = this.boardLength / 8;
@@ -96,14 +134,14 @@ public class ChessboardDetector {
                 }
             }
 
-            Mat cornersMat = new Mat(corners.size(), 1, CvType.CV_32FC2);
+            Mat cornersMat = MatArena.track(new Mat(corners.size(), 1, CvType.CV_32FC2));
             for (int i = 0; i < corners.size(); i++) {
                 cornersMat.put(i, 0,
                         corners.get(i)[0], corners.get(i)[1]
                 );
             }
 
-            Mat cornersOut = new Mat();
+            Mat cornersOut = MatArena.track(new Mat());
             Core.perspectiveTransform(cornersMat, cornersOut, perspectiveTransform);
 
             List<double[]> fourPointsResult = new ArrayList<>();
@@ -130,13 +168,13 @@ public class ChessboardDetector {
         }
 
         // Step 2 - Lattice points search (LAPS)
-        List<double[]> points = laps.laps(image.last().downscaled, segments);
+        List<double[]> points = laps.laps(image.last().downscaled, slid.getHorizontalSegments(), slid.getVerticalSegments());
         if (points == null || points.size() > 200 ) {
             return;
         }
 
         // Step 3 - Chessboard position search (CPS)
-        List<double[]> fourPoints = Cps.cps(image.last().downscaled, points, segments);
+        List<double[]> fourPoints = cps.cps(image.last().downscaled, points, segments);
         if (fourPoints == null || fourPoints.size() > 4) {
             return;
         }
@@ -148,6 +186,23 @@ public class ChessboardDetector {
     public ImageObject detect(Mat image, List<double[]> fourPoints) {
         ImageObject imageObject = new ImageObject(image);
 
+        // Steady state - follow the last board with optical flow
+        if (tracker.getState() == BoardTracker.State.TRACKING) {
+            List<double[]> trackedPoints = tracker.track(imageObject.first());
+
+            if (trackedPoints != null) {
+                imageObject.warp(trackedPoints);
+                imageObject.warpOriginal();
+                imageObject.setCorners(tracker.getLastCorners());
+
+                return imageObject;
+            }
+        }
+
+        if (tracker.getState() == BoardTracker.State.LOST && tracker.getLastFourPoints() != null) {
+            fourPoints = tracker.getLastFourPoints();
+        }
+
         if (fourPoints != null && fourPoints.size() == 4) {
             boolean found = laps.checkBoardPosition(image, fourPoints, 20);
 
@@ -167,10 +222,24 @@ public class ChessboardDetector {
             layer(imageObject);
         }
 
+        imageObject.warpOriginal();
+
+        Pair<List<double[]>, List<double[]>> corners = computeCorners(imageObject);
+        if (corners.first.size() == 4) {
+            tracker.initialize(imageObject.first(), corners);
+        }
+        else {
+            tracker.reset();
+        }
+
         return imageObject;
     }
 
     public Pair<List<double[]>, List<double[]>> computeCorners(ImageObject image) {
-        return originalPointsCoords(image.getPoints());
+        if (image.getCorners() == null) {
+            image.setCorners(originalPointsCoords(image.getPoints()));
+        }
+
+        return image.getCorners();
     }
 }
@@ -1,12 +1,10 @@
 package com.angmolin.livechess2fen.chessboard;
 
-import android.util.Pair;
-
-import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.DBSCAN;
+import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.IndexedDBSCAN;
 import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.exceptions.DBException;
-import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.metrics.DBMetricEuclidean;
 import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.types.DBPoint;
 import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.types.DBSegment;
+import com.angmolin.livechess2fen.chessboard.algorithm.geometry.ConvexPolygon;
 import com.angmolin.livechess2fen.types.ImageObject;
 
 import org.opencv.core.Mat;
@@ -22,12 +20,41 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.lighti.clipper.*;
 import de.lighti.clipper.Point.*;
 
 public class Cps {
 
+    private ForkJoinPool pool = null;
+
+    /*
+     * Number of threads used to score the candidate quads, 1 (the default)
+     * scores them on the calling thread. ForkJoinPool workers are daemons.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public synchronized int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+    /*
+     * Stops the threads of setParallelism, the quads are scored on the
+     * calling thread afterwards.
+     */
+    public void shutdown() {
+        setParallelism(1);
+    }
+
     private static void sortPoints(List<DBPoint> dbPoints) {
         double lat = 0;
         double lng = 0;
@@ -60,21 +87,93 @@ public class Cps {
         return matOfPoint;
     }
 
-    private static List<Pair<DBSegment, DBSegment>> combinations(List<DBSegment> segments) {
-        List<Pair<DBSegment, DBSegment>> combinations = new LinkedList<>();
-
-        for (int i = 0; i < segments.size() - 1; i++) {
-            for (int j = i + 1; j < segments.size(); j++) {
-                combinations.add(
-                        new Pair<>(
-                                segments.get(i),
-                                segments.get(j)
-                        )
-                );
+    private static double contourArea(List<DBPoint> dbPoints) {
+        MatOfPoint contour = dbPointListToMatOfPoint(dbPoints);
+        double area = Imgproc.contourArea(contour);
+        contour.release();
+
+        return area;
+    }
+
+    private static boolean isContourConvex(List<DBPoint> dbPoints) {
+        MatOfPoint contour = dbPointListToMatOfPoint(dbPoints);
+        boolean convex = Imgproc.isContourConvex(contour);
+        contour.release();
+
+        return convex;
+    }
+
+    /*
+     * Intersections between every pair of segments, normalized, or null when
+     * they fall outside the image (or the segments are parallel).
+     */
+    private static DBPoint[][] intersections(List<DBSegment> a, List<DBSegment> b, Size imageSize) {
+        DBPoint[][] intersections = new DBPoint[a.size()][b.size()];
+
+        for (int i = 0; i < a.size(); i++) {
+            for (int j = 0; j < b.size(); j++) {
+                DBPoint point = a.get(i).intersection(b.get(j));
+
+                if (point.checkCorrectness(imageSize)) {
+                    point.normalize();
+                    intersections[i][j] = point;
+                }
+            }
+        }
+
+        return intersections;
+    }
+
+    private static int addCorner(DBPoint[] quad, int count, DBPoint corner) {
+        if (corner == null) {
+            return count;
+        }
+
+        if (count < quad.length) {
+            quad[count] = corner;
+        }
+
+        return count + 1;
+    }
+
+    /*
+     * Area of the quad once its corners are ordered as sortPoints does, with
+     * the same arithmetic as Imgproc.contourArea, without allocating.
+     */
+    private static double sortedArea(DBPoint[] quad, double[] angles, int[] order) {
+        double lat = 0;
+        double lng = 0;
+
+        for (DBPoint dbPoint : quad) {
+            lat += dbPoint.x;
+            lng += dbPoint.y;
+        }
+
+        lat /= quad.length;
+        lng /= quad.length;
+
+        for (int i = 0; i < quad.length; i++) {
+            angles[i] = (Math.atan2(quad[i].x - lat, quad[i].y - lng) + 2 * Math.PI) % (2 * Math.PI);
+            order[i] = i;
+
+            // Stable insertion sort
+            for (int j = i; j > 0 && Double.compare(angles[order[j - 1]], angles[order[j]]) > 0; j--) {
+                int swap = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = swap;
             }
         }
 
-        return combinations;
+        double area = 0;
+        DBPoint previous = quad[order[quad.length - 1]];
+
+        for (int i = 0; i < quad.length; i++) {
+            DBPoint current = quad[order[i]];
+            area += previous.x * current.y - previous.y * current.x;
+            previous = current;
+        }
+
+        return Math.abs(area * 0.5);
     }
 
     private static DBPoint[] orderPoints(List<DBPoint> points) {
@@ -125,38 +224,48 @@ public class Cps {
         return rect;
     }
 
-    public static double polyScore(List<DBPoint> poly, List<DBPoint> points, DBPoint centroid, double alpha, double beta) {
-        double polyArea = Imgproc.contourArea(dbPointListToMatOfPoint(poly));
-
-        if (polyArea < 4 * alpha * alpha * 5) {
-            return 0;
-        }
-
-        double gamma = alpha / 1.5;
-
-        Path _poly = new Path();
-        for (DBPoint dbPoint : poly) {
-            _poly.add(new LongPoint((long) dbPoint.x, (long) dbPoint.y));
+    private static Path clipperOffset(long[] xs, long[] ys, double delta) {
+        Path path = new Path();
+        for (int i = 0; i < xs.length; i++) {
+            path.add(new LongPoint(xs[i], ys[i]));
         }
 
         ClipperOffset clipperOffset = new ClipperOffset();
-        clipperOffset.addPath(_poly, Clipper.JoinType.MITER, Clipper.EndType.CLOSED_POLYGON);
+        clipperOffset.addPath(path, Clipper.JoinType.MITER, Clipper.EndType.CLOSED_POLYGON);
 
         Paths paths = new Paths();
-        clipperOffset.execute(paths, gamma);
+        clipperOffset.execute(paths, delta);
+
+        return paths.get(0);
+    }
+
+    public static double polyScore(List<DBPoint> poly, List<DBPoint> points, DBPoint centroid, double alpha, double beta) {
+        long[] xs = new long[poly.size()];
+        long[] ys = new long[poly.size()];
+        for (int k = 0; k < poly.size(); k++) {
+            xs[k] = (long) poly.get(k).x;
+            ys[k] = (long) poly.get(k).y;
+        }
 
-        Path path = paths.get(0);
+        double polyArea = ConvexPolygon.area(xs, ys, xs.length);
 
-        List<DBPoint> pcnt = new LinkedList<>();
-        for (LongPoint p : path) {
-            pcnt.add(new DBPoint(p.getX(), p.getY()));
+        if (polyArea < 4 * alpha * alpha * 5) {
+            return 0;
         }
 
+        double gamma = alpha / 1.5;
+
+        // Clipper is only needed when the quad is not strictly convex
+        ConvexPolygon frame = ConvexPolygon.offsetQuad(xs, ys, gamma);
+        Path path = frame == null ? clipperOffset(xs, ys, gamma) : null;
+
         List<DBPoint> wtfs = new LinkedList<>();
         for (DBPoint dbPoint : points) {
-            LongPoint lPoint = new LongPoint((long) dbPoint.x, (long)dbPoint.y);
+            long x = (long) dbPoint.x;
+            long y = (long) dbPoint.y;
 
-            if (path.isPointInPolygon(lPoint) != 0) {
+            boolean inside = frame != null ? frame.contains(x, y) : path.isPointInPolygon(new LongPoint(x, y)) != 0;
+            if (inside) {
                 wtfs.add(dbPoint);
             }
         }
@@ -171,6 +280,8 @@ public class Cps {
         Imgproc.convexHull(hullPoints, hullIndices);
 
         List<Integer> hullIndicesList = hullIndices.toList();
+        hullIndices.release();
+        hullPoints.release();
         List<DBPoint> hullPointsList = new LinkedList<>();
         for (Integer i : hullIndicesList) {
             hullPointsList.add(wtfs.get(i));
@@ -237,29 +348,31 @@ public class Cps {
     }
 
     private static DBPoint[] padCrop(DBPoint[] dbPoints) {
-        Path pathToPad = new Path();
-
-        for (DBPoint dbPoint : dbPoints) {
-            pathToPad.add(new LongPoint((long) dbPoint.x, (long) dbPoint.y));
+        long[] xs = new long[dbPoints.length];
+        long[] ys = new long[dbPoints.length];
+        for (int i = 0; i < dbPoints.length; i++) {
+            xs[i] = (long) dbPoints[i].x;
+            ys[i] = (long) dbPoints[i].y;
         }
 
-        ClipperOffset clipperOffset = new ClipperOffset();
-        clipperOffset.addPath(pathToPad, Clipper.JoinType.MITER, Clipper.EndType.CLOSED_POLYGON);
-
-        Paths paddedPaths = new Paths();
-        clipperOffset.execute(paddedPaths, 60);
-
-        Path paddedPath = paddedPaths.get(0);
-
         List<DBPoint> dbPointsPadded = new LinkedList<>();
-        for (LongPoint p : paddedPath) {
-            dbPointsPadded.add(new DBPoint(p.getX(), p.getY()));
+
+        ConvexPolygon padded = ConvexPolygon.offsetQuad(xs, ys, 60);
+        if (padded != null) {
+            for (int i = 0; i < padded.size(); i++) {
+                dbPointsPadded.add(new DBPoint(padded.getX(i), padded.getY(i)));
+            }
+        }
+        else {
+            for (LongPoint p : clipperOffset(xs, ys, 60)) {
+                dbPointsPadded.add(new DBPoint(p.getX(), p.getY()));
+            }
         }
 
         return orderPoints(dbPointsPadded);
     }
 
-    public static List<double[]> cps(Mat image, List<double[]> points, List<double[]> segments) {
+    public List<double[]> cps(Mat image, List<double[]> points, List<double[]> segments) {
         if (points.size() == 0) {
             return new LinkedList<>();
         }
@@ -279,9 +392,9 @@ public class Cps {
         sortPoints(dbPoints);
         List<DBPoint> biggestGroup = null;
 
-        double alpha = Math.sqrt(Imgproc.contourArea(dbPointListToMatOfPoint(dbPoints)) / 49);
+        double alpha = Math.sqrt(contourArea(dbPoints) / 49);
         try {
-            DBSCAN<DBPoint> dbscan = new DBSCAN<>(dbPoints, 5, alpha * 4, new DBMetricEuclidean());
+            IndexedDBSCAN dbscan = new IndexedDBSCAN(dbPoints, 5, alpha * 4);
             List<List<DBPoint>> dbGroups = dbscan.performClustering();
 
             for (List<DBPoint> dbGroup : dbGroups) {
@@ -300,7 +413,7 @@ public class Cps {
 
             int n = finalPoints.size();
             double beta = n * 0.05;
-            alpha = Math.sqrt(Imgproc.contourArea(dbPointListToMatOfPoint(finalPoints)) / 49);
+            alpha = Math.sqrt(contourArea(finalPoints) / 49);
 
             //List<Double> x = new LinkedList<>();
             double sumX = 0;
@@ -457,50 +570,28 @@ public class Cps {
             removeDuplicates(dbSegmentsVertical);
             removeDuplicates(dbSegmentsHorizontal);
 
-            List<Pair<Double, List<DBPoint>>> score = new LinkedList<>();
-
-
-            for (Pair<DBSegment, DBSegment> v : combinations(dbSegmentsVertical)) {
-                for (Pair<DBSegment, DBSegment> h : combinations(dbSegmentsHorizontal)) {
-                    List<DBPoint> poly = new LinkedList<>();
-                    List<DBPoint> outPoints = new LinkedList<>();
+            List<DBSegment> verticals = new ArrayList<>(dbSegmentsVertical);
+            List<DBSegment> horizontals = new ArrayList<>(dbSegmentsHorizontal);
 
-                    poly.add(v.first.intersection(v.second));
-                    poly.add(v.first.intersection(h.first));
-                    poly.add(v.first.intersection(h.second));
-                    poly.add(v.second.intersection(h.first));
-                    poly.add(v.second.intersection(h.second));
-                    poly.add(h.first.intersection(h.second));
+            // Every intersection is computed once instead of once per quad
+            DBPoint[][] verticalIntersections = intersections(verticals, verticals, imageSize);
+            DBPoint[][] crossIntersections = intersections(verticals, horizontals, imageSize);
+            DBPoint[][] horizontalIntersections = intersections(horizontals, horizontals, imageSize);
 
-                    for (DBPoint point : poly) {
-                        if (point.checkCorrectness(imageSize)) {
-                            point.normalize();
-                        }
-                        else {
-                            outPoints.add(point);
-                        }
-                    }
-                    poly.removeAll(outPoints);
-
-
-                    if (poly.size() != 4) {
-                        continue;
-                    }
-
-                    sortPoints(poly);
-
-                    if (!Imgproc.isContourConvex(dbPointListToMatOfPoint(poly))) {
-                        continue;
-                    }
+            QuadSearch search = new QuadSearch(
+                    verticalIntersections, crossIntersections, horizontalIntersections,
+                    finalPoints, centroid, alpha, beta
+            );
 
-                    score.add(new Pair(-polyScore(poly, finalPoints, centroid, alpha, beta), poly));
-                }
+            ForkJoinPool searchPool;
+            synchronized (this) {
+                searchPool = pool;
             }
 
-            if (score.size() > 0) {
-                Collections.sort(score, (o1, o2) -> o1.first.compareTo(o2.first));
+            List<DBPoint> best = search.run(searchPool);
 
-                List<DBPoint> innerPoints = score.get(0).second;
+            if (best != null) {
+                List<DBPoint> innerPoints = best;
                 DBPoint[] cropPoints = orderPoints(innerPoints);
                 DBPoint[] padPoints = padCrop(cropPoints);
 
@@ -519,4 +610,201 @@ public class Cps {
         return null;
     }
 
+
+    /*
+     * Exhaustive search of the best quad formed by two vertical and two
+     * horizontal lines. The vertical pairs are split in contiguous ranges
+     * scored on the pool, every range keeping its own scratch state and
+     * best candidate. Ranges are merged keeping the highest score and, on
+     * ties, the candidate enumerated first, so the result does not depend on
+     * the pool size nor on scheduling.
+     */
+    private static class QuadSearch {
+
+        private static final int pairsPerTask = 2;
+
+        private final DBPoint[][] verticalIntersections;
+        private final DBPoint[][] crossIntersections;
+        private final DBPoint[][] horizontalIntersections;
+
+        private final List<DBPoint> points;
+        private final DBPoint centroid;
+        private final double alpha;
+        private final double beta;
+
+        private final double minArea;
+        private final double maxPoints;
+
+        private final int[] pairFirst;
+        private final int[] pairSecond;
+        private final int horizontals;
+
+        // Best score found by any range, as raw long bits (scores are >= 0)
+        private final AtomicLong sharedBestScore = new AtomicLong(Double.doubleToLongBits(-1));
+
+        QuadSearch(DBPoint[][] verticalIntersections, DBPoint[][] crossIntersections, DBPoint[][] horizontalIntersections,
+                   List<DBPoint> points, DBPoint centroid, double alpha, double beta) {
+            this.verticalIntersections = verticalIntersections;
+            this.crossIntersections = crossIntersections;
+            this.horizontalIntersections = horizontalIntersections;
+            this.points = points;
+            this.centroid = centroid;
+            this.alpha = alpha;
+            this.beta = beta;
+
+            minArea = 4 * alpha * alpha * 5;
+            maxPoints = Math.pow(Math.min(points.size(), 49), 4);
+
+            int verticals = verticalIntersections.length;
+            horizontals = horizontalIntersections.length;
+
+            int pairs = verticals > 1 ? verticals * (verticals - 1) / 2 : 0;
+            pairFirst = new int[pairs];
+            pairSecond = new int[pairs];
+
+            int k = 0;
+            for (int v1 = 0; v1 < verticals - 1; v1++) {
+                for (int v2 = v1 + 1; v2 < verticals; v2++) {
+                    pairFirst[k] = v1;
+                    pairSecond[k] = v2;
+                    k++;
+                }
+            }
+        }
+
+        List<DBPoint> run(ForkJoinPool pool) {
+            Candidate best;
+
+            if (pool == null || pairFirst.length <= pairsPerTask) {
+                best = scoreRange(0, pairFirst.length);
+            }
+            else {
+                best = pool.invoke(new Task(0, pairFirst.length));
+            }
+
+            return best != null ? best.poly : null;
+        }
+
+        private Candidate scoreRange(int from, int to) {
+            DBPoint[] quad = new DBPoint[4];
+            double[] angles = new double[4];
+            int[] order = new int[4];
+
+            Candidate best = null;
+
+            for (int k = from; k < to; k++) {
+                int v1 = pairFirst[k];
+                int v2 = pairSecond[k];
+
+                for (int h1 = 0; h1 < horizontals - 1; h1++) {
+                    for (int h2 = h1 + 1; h2 < horizontals; h2++) {
+                        int count = 0;
+
+                        count = addCorner(quad, count, verticalIntersections[v1][v2]);
+                        count = addCorner(quad, count, crossIntersections[v1][h1]);
+                        count = addCorner(quad, count, crossIntersections[v1][h2]);
+                        count = addCorner(quad, count, crossIntersections[v2][h1]);
+                        count = addCorner(quad, count, crossIntersections[v2][h2]);
+                        count = addCorner(quad, count, horizontalIntersections[h1][h2]);
+
+                        if (count != 4) {
+                            continue;
+                        }
+
+                        /*
+                         * polyScore is at most min(n, 49)^4 / area^2 (both weights
+                         * are >= 1), so quads whose bound does not beat the best
+                         * score found so far can be discarded before running the
+                         * convexity test, the offset and the point counting.
+                         * Other ranges may only prune strictly below their best,
+                         * because a tie could still be enumerated first here.
+                         */
+                        double polyArea = sortedArea(quad, angles, order);
+                        double upperBound = polyArea < minArea ? 0 : maxPoints / Math.pow(polyArea, 2);
+
+                        if (best != null && upperBound <= best.score) {
+                            continue;
+                        }
+
+                        if (upperBound < Double.longBitsToDouble(sharedBestScore.get())) {
+                            continue;
+                        }
+
+                        List<DBPoint> poly = new ArrayList<>(4);
+                        for (DBPoint corner : quad) {
+                            poly.add(new DBPoint(corner.x, corner.y));
+                        }
+
+                        sortPoints(poly);
+
+                        if (!isContourConvex(poly)) {
+                            continue;
+                        }
+
+                        double polyScore = upperBound == 0 ? 0 : polyScore(poly, points, centroid, alpha, beta);
+
+                        // Ties keep the first candidate, as the stable sort did
+                        if (best == null || polyScore > best.score) {
+                            best = new Candidate(poly, polyScore);
+                            sharedBestScore.accumulateAndGet(Double.doubleToLongBits(polyScore), Math::max);
+                        }
+                    }
+                }
+            }
+
+            return best;
+        }
+
+        private static Candidate merge(Candidate first, Candidate second) {
+            if (first == null || (second != null && second.score > first.score)) {
+                return second;
+            }
+
+            return first;
+        }
+
+        private static class Candidate {
+
+            final List<DBPoint> poly;
+            final double score;
+
+            Candidate(List<DBPoint> poly, double score) {
+                this.poly = poly;
+                this.score = score;
+            }
+
+        }
+
+        private class Task extends RecursiveTask<Candidate> {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+
+            Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Candidate compute() {
+                if (to - from <= pairsPerTask) {
+                    return scoreRange(from, to);
+                }
+
+                int middle = (from + to) >>> 1;
+
+                Task second = new Task(middle, to);
+                second.fork();
+
+                Candidate first = new Task(from, middle).compute();
+
+                return merge(first, second.join());
+            }
+
+        }
+
+    }
+
 }
@@ -0,0 +1,521 @@
+package com.angmolin.livechess2fen.chessboard;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.BentleyOttmann;
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOPoint;
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOSegment;
+import com.angmolin.livechess2fen.chessboard.algorithm.geometry.FamilyIntersector;
+import com.angmolin.livechess2fen.chessboard.algorithm.lattice.LatticePatchAnalyzer;
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+import com.angmolin.livechess2fen.types.ImageObject;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Range;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Laps {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final int analysisRadius = 10;
+
+    public enum IntersectionMode {
+        // Bentley-Ottmann sweep over every segment
+        SWEEP,
+        // Only horizontal x vertical intersections
+        LINE_FAMILIES
+    }
+
+    private final ImageClassifier lapsClassifier;
+
+    private final FamilyIntersector familyIntersector = new FamilyIntersector();
+
+    // Patch state per thread, the first one is used by the calling thread
+    private PatchWorker[] workers = { new PatchWorker() };
+    private ExecutorService executor = null;
+
+    private IntersectionMode intersectionMode = IntersectionMode.LINE_FAMILIES;
+    private boolean markPoints = true;
+
+    public Laps(ImageClassifier lapsClassifier) {
+        this.lapsClassifier = lapsClassifier;
+    }
+
+    /*
+     * Number of threads analyzing the candidate points, 1 analyzes them on
+     * the calling thread. The extra threads are daemons, so a forgotten
+     * shutdown does not keep the JVM alive.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism - 1, Laps::newWorkerThread) : null;
+
+        workers = new PatchWorker[Math.max(1, parallelism)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new PatchWorker();
+        }
+    }
+
+    public synchronized int getParallelism() {
+        return workers.length;
+    }
+
+    /*
+     * Stops the threads of setParallelism, the points are analyzed on the
+     * calling thread afterwards.
+     */
+    public void shutdown() {
+        setParallelism(1);
+    }
+
+    private static Thread newWorkerThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Laps-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /*
+     * Whether lattice points are drawn on the analyzed image, once all of
+     * them are found.
+     */
+    public void setMarkPoints(boolean markPoints) {
+        this.markPoints = markPoints;
+    }
+
+    public IntersectionMode getIntersectionMode() {
+        return intersectionMode;
+    }
+
+    public void setIntersectionMode(IntersectionMode intersectionMode) {
+        this.intersectionMode = intersectionMode;
+    }
+
+    private static List<BOPoint> clusterPoints(List<BOPoint> boPoints, int maximumDistance) {
+        List<BOPoint> boGroups = new ArrayList<>();
+
+        for (BOPoint boPoint : boPoints) {
+            int i = 0;
+            boolean found = false;
+
+            while (i < boGroups.size() && !found) {
+                BOPoint boGroup = boGroups.get(i);
+
+                if (boGroup.distanceTo(boPoint) < maximumDistance) {
+                    boGroups.set(i, new BOPoint(
+                            (boGroup.x + boPoint.x) / 2,
+                            (boGroup.y + boPoint.y) / 2
+                    ));
+
+                    found = true;
+                }
+                else {
+                    i++;
+                }
+            }
+
+            if (!found) {
+                boGroups.add(boPoint);
+            }
+        }
+
+        return boGroups;
+    }
+
+    /*
+     * Classifies the patches queued by the workers in batches, in the order
+     * of the candidates they belong to.
+     */
+    private void classifyPending(byte[] status, Mat[] pendingEdges, int count) {
+        List<Mat> pending = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            if (status[i] == PatchWorker.pending) {
+                pending.add(pendingEdges[i]);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int[] maximums = lapsClassifier.classifyBatchAndGetMax(pending);
+
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            if (status[i] == PatchWorker.pending) {
+                status[i] = maximums[k++] == 0 ? PatchWorker.latticePoint : PatchWorker.notLatticePoint;
+            }
+        }
+    }
+
+    private Mat patch(Mat image, int cols, int rows, int x, int y) {
+        int lX1 = Math.max(0, x - analysisRadius - 1);
+        int lX2 = Math.max(0, x + analysisRadius);
+        int lY1 = Math.max(0, y - analysisRadius);
+        int lY2 = Math.max(0, y + analysisRadius + 1);
+
+        Mat pMat = new Mat();
+
+        if (lX1 <= image.cols() && lY1 <= image.rows()) {
+            lX2 = Math.min(cols, lX2);
+            lY2 = Math.min(rows, lY2);
+
+            pMat = image.submat(new Range(lY1, lY2), new Range(lX1, lX2));
+        }
+
+        return pMat;
+    }
+
+    /*
+     * Candidates are split in contiguous ranges, one per worker. Workers only
+     * read the image, the first range is analyzed on the calling thread.
+     */
+    private synchronized List<BOPoint> analyzePoints(Mat image, double[] intersectionPoints, int count) {
+        int cols = image.cols();
+        int rows = image.rows();
+
+        List<BOPoint> candidates = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            double x = intersectionPoints[2 * i];
+            double y = intersectionPoints[2 * i + 1];
+
+            if (x < 0 || y < 0 || x > cols || y > cols) {
+                continue;
+            }
+
+            candidates.add(new BOPoint(x, y));
+        }
+
+        int n = candidates.size();
+        byte[] status = new byte[n];
+        Mat[] pendingEdges = new Mat[n];
+
+        int ranges = Math.min(workers.length, Math.max(1, n));
+        Semaphore finished = new Semaphore(0);
+        RuntimeException[] failures = new RuntimeException[ranges];
+
+        for (int r = 1; r < ranges; r++) {
+            final int range = r;
+
+            executor.execute(() -> {
+                try {
+                    workers[range].analyzeRange(image, candidates, range * n / ranges, (range + 1) * n / ranges, status, pendingEdges);
+                }
+                catch (RuntimeException e) {
+                    failures[range] = e;
+                }
+                finally {
+                    finished.release();
+                }
+            });
+        }
+
+        workers[0].analyzeRange(image, candidates, 0, n / ranges, status, pendingEdges);
+        finished.acquireUninterruptibly(ranges - 1);
+
+        for (RuntimeException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        classifyPending(status, pendingEdges, n);
+
+        List<BOPoint> chessboardPoints = new LinkedList<>();
+
+        for (int i = 0; i < n; i++) {
+            if (status[i] == PatchWorker.latticePoint) {
+                chessboardPoints.add(candidates.get(i));
+            }
+        }
+
+        if (markPoints) {
+            for (BOPoint p : chessboardPoints) {
+                Imgproc.circle(image, new Point(p.x, p.y), 5, new Scalar(255, 255, 255), -1);
+            }
+        }
+
+        return chessboardPoints;
+    }
+
+    public List<double[]> laps(Mat image, List<double[]> segments) {
+        BentleyOttmann bo = new BentleyOttmann(rawToBOSegments(segments));
+        bo.findIntersections();
+        List<BOPoint> intersectionPoints = bo.getIntersections();
+
+        double[] points = new double[2 * intersectionPoints.size()];
+        for (int i = 0; i < intersectionPoints.size(); i++) {
+            points[2 * i] = intersectionPoints.get(i).x;
+            points[2 * i + 1] = intersectionPoints.get(i).y;
+        }
+
+        return latticePoints(image, points, intersectionPoints.size());
+    }
+
+    /*
+     * horizontalSegments and verticalSegments are the two line families
+     * found by Slid.slid. With IntersectionMode.LINE_FAMILIES only the
+     * intersections between both families are analyzed.
+     */
+    public List<double[]> laps(Mat image, List<double[]> horizontalSegments, List<double[]> verticalSegments) {
+        if (intersectionMode == IntersectionMode.SWEEP) {
+            List<double[]> segments = new ArrayList<>(horizontalSegments);
+            segments.addAll(verticalSegments);
+
+            return laps(image, segments);
+        }
+
+        int count = familyIntersector.intersect(horizontalSegments, verticalSegments);
+
+        return latticePoints(image, familyIntersector.getPoints(), count);
+    }
+
+    private List<double[]> latticePoints(Mat image, double[] intersectionPoints, int count) {
+        List<BOPoint> chessboardPoints;
+
+        chessboardPoints = analyzePoints(image, intersectionPoints, count);
+
+        /*
+         * FIXME Cluster points have been implemented but it's not
+         *  working properly so I have disabled by now.
+         */
+        List<BOPoint> clusteredPoints = clusterPoints(chessboardPoints, 5);
+
+        List<double[]> result = new LinkedList<>();
+        for (BOPoint point : chessboardPoints) {
+            result.add(point.toRaw());
+        }
+
+        return result;
+    }
+
+    /*
+     * Visiting order of the side x side inner corners of the board. Points of
+     * a Halton sequence (bases 2 and 3) take the closest corner not visited
+     * yet, so any prefix of the order is spread over the whole board.
+     */
+    static int[] spreadOrder(int side) {
+        int cells = side * side;
+        int[] order = new int[cells];
+        boolean[] visited = new boolean[cells];
+
+        for (int i = 0, index = 1; i < cells; index++) {
+            double x = halton(index, 2) * side;
+            double y = halton(index, 3) * side;
+
+            int closest = -1;
+            double closestDistance = Double.MAX_VALUE;
+
+            for (int cell = 0; cell < cells; cell++) {
+                if (visited[cell]) {
+                    continue;
+                }
+
+                double dx = cell % side + 0.5 - x;
+                double dy = cell / side + 0.5 - y;
+                double distance = dx * dx + dy * dy;
+
+                if (distance < closestDistance) {
+                    closest = cell;
+                    closestDistance = distance;
+                }
+            }
+
+            visited[closest] = true;
+            order[i++] = closest;
+        }
+
+        return order;
+    }
+
+    private static double halton(int index, int base) {
+        double result = 0;
+        double f = 1.0 / base;
+
+        for (int i = index; i > 0; i /= base) {
+            result += f * (i % base);
+            f /= base;
+        }
+
+        return result;
+    }
+
+    private static final int[] cornerOrder = spreadOrder(7);
+
+    /*
+     * Warps only the patch of the board around (x, y), the same pixels
+     * patch(matTransform(image, fourPoints), ...) would give.
+     */
+    private Mat warpedPatch(Mat image, double[] transform, int x, int y) {
+        int lX1 = Math.max(0, x - analysisRadius - 1);
+        int lX2 = Math.min(ChessboardDetector.boardLength, x + analysisRadius);
+        int lY1 = Math.max(0, y - analysisRadius);
+        int lY2 = Math.min(ChessboardDetector.boardLength, y + analysisRadius + 1);
+
+        // Translation of the board homography to the patch origin
+        Mat patchTransform = new Mat(3, 3, CvType.CV_64F);
+        patchTransform.put(0, 0,
+                transform[0] - lX1 * transform[6], transform[1] - lX1 * transform[7], transform[2] - lX1 * transform[8],
+                transform[3] - lY1 * transform[6], transform[4] - lY1 * transform[7], transform[5] - lY1 * transform[8],
+                transform[6],                      transform[7],                      transform[8]
+        );
+
+        Size patchSize = new Size(lX2 - lX1, lY2 - lY1);
+        Mat pMat = new Mat(patchSize, CvType.CV_8UC4);
+        Imgproc.warpPerspective(image, pMat, patchTransform, patchSize);
+        patchTransform.release();
+
+        return pMat;
+    }
+
+    /*
+     * Sequential test over the inner corners of the board, it stops as soon
+     * as tolerance corners are lattice points or they can't be anymore.
+     * Corners the geometric test rejects are verified by the classifier in a
+     * single batch at the end.
+     */
+    public synchronized boolean checkBoardPosition(Mat image, List<double[]> fourPoints, int tolerance) {
+        double[] transform = new double[9];
+        Mat perspectiveTransform = ImageObject.perspectiveTransform(fourPoints);
+        perspectiveTransform.get(0, 0, transform);
+        perspectiveTransform.release();
+
+        int step = ChessboardDetector.boardLength / 8;
+        int corners = cornerOrder.length;
+
+        byte[] status = new byte[corners];
+        Mat[] pendingEdges = new Mat[corners];
+
+        PatchWorker worker = workers[0];
+        worker.reset();
+
+        int correctPoints = 0;
+        int pendingPoints = 0;
+
+        for (int i = 0; i < corners; i++) {
+            int rowCorner = step * (1 + cornerOrder[i] / 7);
+            int colCorner = step * (1 + cornerOrder[i] % 7);
+
+            int lX1 = Math.max(0, rowCorner - analysisRadius - 1);
+            int lY1 = Math.max(0, colCorner - analysisRadius);
+
+            if (lX1 <= image.cols() && lY1 <= image.rows()) {
+                Mat pMat = warpedPatch(image, transform, rowCorner, colCorner);
+
+                status[i] = worker.analyze(pMat, pendingEdges, i);
+                pMat.release();
+            }
+
+            if (status[i] == PatchWorker.latticePoint) {
+                correctPoints++;
+            }
+            else if (status[i] == PatchWorker.pending) {
+                pendingPoints++;
+            }
+
+            if (correctPoints >= tolerance) {
+                return true;
+            }
+
+            if (correctPoints + pendingPoints + corners - 1 - i < tolerance) {
+                return false;
+            }
+        }
+
+        classifyPending(status, pendingEdges, corners);
+
+        correctPoints = 0;
+        for (int i = 0; i < corners; i++) {
+            if (status[i] == PatchWorker.latticePoint) {
+                correctPoints++;
+            }
+        }
+
+        return correctPoints >= tolerance;
+    }
+
+    private static List<BOSegment> rawToBOSegments(List<double[]> rawSegments) {
+        List<BOSegment> boSegments = new ArrayList<>();
+
+        for (double[] rawSegment : rawSegments) {
+            boSegments.add(BOSegment.fromRawData(rawSegment));
+        }
+
+        return boSegments;
+    }
+
+    private class PatchWorker {
+
+        static final byte notLatticePoint = 0;
+        static final byte latticePoint = 1;
+        static final byte pending = 2;
+
+        private final LatticePatchAnalyzer analyzer = new LatticePatchAnalyzer();
+
+        // Edges of the patches waiting for the classifier, reused between frames
+        private final List<Mat> pendingPatches = new ArrayList<>();
+        private int pendingCount = 0;
+
+        void reset() {
+            pendingCount = 0;
+        }
+
+        void analyzeRange(Mat image, List<BOPoint> candidates, int from, int to, byte[] status, Mat[] pendingEdges) {
+            reset();
+
+            for (int i = from; i < to; i++) {
+                BOPoint p = candidates.get(i);
+                Mat pMat = patch(image, image.cols(), image.rows(), (int) p.x, (int) p.y);
+
+                status[i] = analyze(pMat, pendingEdges, i);
+                pMat.release();
+            }
+        }
+
+        /*
+         * Geometric test of the patch. When it is not conclusive and there is
+         * a classifier, its edges are queued in pendingEdges[index].
+         */
+        byte analyze(Mat patch, Mat[] pendingEdges, int index) {
+            if (patch.rows() <= 0 || patch.cols() <= 0) {
+                return notLatticePoint;
+            }
+
+            analyzer.load(patch);
+
+            if (analyzer.countQuadrilaterals() == LatticePatchAnalyzer.quadrilateralsOfLatticePoint) {
+                return latticePoint;
+            }
+
+            if (lapsClassifier == null) {
+                return notLatticePoint;
+            }
+
+            if (pendingCount == pendingPatches.size()) {
+                pendingPatches.add(new Mat());
+            }
+
+            pendingEdges[index] = analyzer.edgesMat(pendingPatches.get(pendingCount++));
+
+            return pending;
+        }
+
+    }
+
+}
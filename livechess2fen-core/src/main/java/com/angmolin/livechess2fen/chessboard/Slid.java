@@ -0,0 +1,332 @@
+package com.angmolin.livechess2fen.chessboard;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.geometry.SegmentGrouper;
+import com.angmolin.livechess2fen.chessboard.algorithm.geometry.SegmentMerger;
+import com.angmolin.livechess2fen.chessboard.types.CLAHESettings;
+import com.angmolin.livechess2fen.types.ImageObject;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.CLAHE;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Slid {
+
+    private final SegmentGrouper grouper = new SegmentGrouper();
+
+    private List<double[]> lastVerticalSegments = new LinkedList<>();
+    private List<double[]> lastHorizontalSegments = new LinkedList<>();
+
+    private static final CLAHESettings[] claheSettings = {
+            new CLAHESettings(3, new Size(2, 6), 5),
+            new CLAHESettings(3, new Size(6, 2), 5),
+            new CLAHESettings(5, new Size(3, 3), 5),
+            new CLAHESettings(0, new Size(0, 0), 0),
+    };
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // Created on first use, one per setting. A Slid is used by one thread at
+    // a time and every setting runs on one branch, so they are never shared
+    private final CLAHE[] claheCache = new CLAHE[claheSettings.length];
+
+    private ExecutorService executor = null;
+    private int parallelism = 1;
+
+    private static final ThreadLocal<byte[]> pixelBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[0];
+        }
+    };
+
+    /*
+     * Number of threads running the CLAHE settings of slidSegments, 1 runs
+     * them on the calling thread. The extra threads are daemons, as the ones
+     * of Laps.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        this.parallelism = Math.max(1, parallelism);
+        executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism - 1, Slid::newWorkerThread) : null;
+    }
+
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /*
+     * Stops the threads of setParallelism, the settings run on the calling
+     * thread afterwards.
+     */
+    public void shutdown() {
+        setParallelism(1);
+    }
+
+    private static Thread newWorkerThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Slid-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    private CLAHE clahe(int index) {
+        if (claheCache[index] == null) {
+            CLAHESettings settings = claheSettings[index];
+            claheCache[index] = Imgproc.createCLAHE(settings.limit, settings.grid);
+        }
+
+        return claheCache[index];
+    }
+
+    private Mat simplifyMat(Mat grayMat, int index) {
+        if (grayMat == null) {
+            return null;
+        }
+
+        int iterations = claheSettings[index].iterations;
+
+        // The gray image is shared by every setting, it is only read
+        if (iterations == 0) {
+            return grayMat;
+        }
+
+        Mat outputMat = grayMat.clone();
+        CLAHE clahe = clahe(index);
+
+        for (int i = 0; i < iterations; i++) {
+            clahe.apply(outputMat, outputMat);
+        }
+
+        return outputMat;
+    }
+
+    /*
+     * Median of a gray image from its 256 bin histogram, filled in a single
+     * pass over the pixels.
+     */
+    private static double median(Mat grayMat) {
+        Mat continuousMat = grayMat.isContinuous() ? grayMat : grayMat.clone();
+
+        int total = (int) continuousMat.total();
+        byte[] pixels = pixelBuffer.get();
+
+        if (pixels.length < total) {
+            pixels = new byte[total];
+            pixelBuffer.set(pixels);
+        }
+
+        continuousMat.get(0, 0, pixels);
+
+        if (continuousMat != grayMat) {
+            continuousMat.release();
+        }
+
+        int[] histogram = new int[256];
+        for (int i = 0; i < total; i++) {
+            histogram[pixels[i] & 0xff]++;
+        }
+
+        // Average of both middle values when the number of pixels is even
+        int lowRank = (total - 1) / 2;
+        int highRank = total / 2;
+        int low = -1;
+        int high = -1;
+        int seen = 0;
+
+        for (int value = 0; value < 256 && high == -1; value++) {
+            seen += histogram[value];
+
+            if (low == -1 && seen > lowRank) {
+                low = value;
+            }
+
+            if (seen > highRank) {
+                high = value;
+            }
+        }
+
+        return (low + high) / 2.0;
+    }
+
+    private static Mat detectEdges(Mat inputMat) {
+        if (inputMat == null) {
+            return null;
+        }
+
+        double sigma = 0.25;
+
+        double v = median(inputMat);
+
+        Mat blurredMat = new Mat(inputMat.size(), inputMat.type());
+        Imgproc.GaussianBlur(inputMat, blurredMat, new Size(7, 7),2);
+
+        double lower = Math.max(0, (1.0 - sigma) * v);
+        double upper = Math.min(255, (1.0 + sigma) * v);
+
+        Mat outputMat = new Mat(blurredMat.size(), blurredMat.type());
+        Imgproc.Canny(blurredMat, outputMat, lower, upper);
+
+        blurredMat.release();
+
+        return outputMat;
+    }
+
+    private static Mat detectLines(Mat inputMat) {
+        int beta = 2;
+
+        Mat outputMat = new Mat();
+        Imgproc.HoughLinesP(inputMat, outputMat, 1, Math.PI / 360 * beta, 40, 50, 15);
+
+        return outputMat;
+    }
+
+    private Mat detectSegments(Mat grayMat, int index) {
+        Mat simplifiedImage = simplifyMat(grayMat, index);
+        Mat edgesImage = detectEdges(simplifiedImage);
+        Mat segmentsMat = detectLines(edgesImage);
+
+        if (simplifiedImage != grayMat) {
+            simplifiedImage.release();
+        }
+        edgesImage.release();
+
+        return segmentsMat;
+    }
+
+    public Mat slidSegments(Mat image) {
+        Mat grayMat = new Mat(image.size(), CvType.CV_8U);
+        Imgproc.cvtColor(image, grayMat, Imgproc.COLOR_RGBA2GRAY);
+
+        Executor branchExecutor;
+        synchronized (this) {
+            branchExecutor = executor;
+        }
+        List<FutureTask<Mat>> branches = new ArrayList<>(claheSettings.length);
+
+        for (int i = 0; i < claheSettings.length; i++) {
+            final int index = i;
+            FutureTask<Mat> branch = new FutureTask<>(() -> detectSegments(grayMat, index));
+
+            // The last setting runs here while the others are detected
+            if (branchExecutor != null && i < claheSettings.length - 1) {
+                branchExecutor.execute(branch);
+            }
+
+            branches.add(branch);
+        }
+
+        // Merged in setting order, as the sequential detection did
+        Mat ocvSegments = new Mat();
+
+        for (FutureTask<Mat> branch : branches) {
+            // Does nothing if the executor already started it
+            branch.run();
+
+            Mat segmentsMat = segments(branch);
+            ocvSegments.push_back(segmentsMat);
+            segmentsMat.release();
+        }
+
+        grayMat.release();
+
+        return ocvSegments;
+    }
+
+    private static Mat segments(FutureTask<Mat> branch) {
+        try {
+            return branch.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while detecting segments", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public static double scale(double v1, double v2, double s) {
+        return v1 * (1 + s) / 2 + v2 * (1 - s) / 2;
+    }
+
+    public static double[] scaleSegment(double[] segment) {
+        double scale = 4;
+
+        return new double[] {
+                scale(segment[0], segment[2], scale),
+                scale(segment[1], segment[3], scale),
+                scale(segment[2], segment[0], scale),
+                scale(segment[3], segment[1], scale)
+        };
+    }
+
+    public List<double[]> slid(Mat image) {
+        Mat segmentsMat = slidSegments(image);
+
+        int n = segmentsMat.height();
+        List<double[]> segments = new ArrayList<>(n);
+        boolean[] vertical = new boolean[n];
+
+        for (int i = 0; i < n; i++) {
+            double[] segment = segmentsMat.get(i, 0);
+            segments.add(segment);
+
+            double t1 = segment[0] - segment[2];
+            double t2 = segment[1] - segment[3];
+
+            vertical[i] = Math.abs(t1) < Math.abs(t2);
+        }
+
+        segmentsMat.release();
+
+        List<double[]> finalSegments = new LinkedList<>();
+        lastVerticalSegments = new LinkedList<>();
+        lastHorizontalSegments = new LinkedList<>();
+
+        for (int[] group : grouper.group(segments, vertical)) {
+            double[] mergedSegment = SegmentMerger.merge(segments, group);
+            finalSegments.add(mergedSegment);
+
+            // Groups are only joined inside a family
+            if (vertical[group[0]]) {
+                lastVerticalSegments.add(mergedSegment);
+            }
+            else {
+                lastHorizontalSegments.add(mergedSegment);
+            }
+        }
+
+        return finalSegments;
+    }
+
+    /*
+     * Merged segments of the last slid call, split by family.
+     */
+    public List<double[]> getVerticalSegments() {
+        return lastVerticalSegments;
+    }
+
+    public List<double[]> getHorizontalSegments() {
+        return lastHorizontalSegments;
+    }
+
+}
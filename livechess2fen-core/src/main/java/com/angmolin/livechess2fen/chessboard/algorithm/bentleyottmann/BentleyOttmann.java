@@ -0,0 +1,369 @@
+/*
+ * https://github.com/valenpe7/bentley-ottmann
+ */
+
+package com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * The sweep line status holds segment indices ordered by their y at the
+ * current sweep position, computed on demand by the comparator, so nothing
+ * has to be recalculated when the sweep advances. Segments meeting at the
+ * sweep position are ordered by slope as they are just before it (to remove
+ * them) or just after it (to insert them).
+ *
+ * Pending intersection events are indexed by segment pair, so cancelling one
+ * when its segments stop being neighbours is a O(log n) removal. Vertical
+ * segments are not inserted in the status, they are intersected at once
+ * with the range of segments they cross.
+ */
+public class BentleyOttmann {
+
+    private static final double tolerance = 1e-9;
+
+    private final List<BOSegment> input;
+    private final int n;
+    private final int probe;
+
+    private final double[] firstX;
+    private final double[] firstY;
+    private final double[] secondX;
+    private final double[] secondY;
+    private final double[] slope;
+
+    // y of every segment at the sweep position, computed at most once per step
+    private final double[] sweepY;
+    private final int[] sweepStep;
+
+    private double sweepX;
+    private int step;
+    private boolean beforeSweep;
+    private double probeY;
+
+    private NavigableSet<BOEvent> events;
+    private NavigableSet<Integer> segments;
+    private Map<Long, BOEvent> pendingIntersections;
+    private Set<Long> reportedIntersections;
+    private ArrayList<BOPoint> points;
+
+    public BentleyOttmann(List<BOSegment> segments) {
+        this.input = new ArrayList<>(segments);
+        this.n = input.size();
+        this.probe = n;
+
+        this.firstX = new double[n + 1];
+        this.firstY = new double[n + 1];
+        this.secondX = new double[n + 1];
+        this.secondY = new double[n + 1];
+        this.slope = new double[n + 1];
+        this.sweepY = new double[n + 1];
+        this.sweepStep = new int[n + 1];
+
+        this.events = new TreeSet<>(new BOEventComparator());
+        this.segments = new TreeSet<>(new BOSegmentComparator());
+        this.pendingIntersections = new HashMap<>();
+        this.reportedIntersections = new HashSet<>();
+        this.points = new ArrayList<>();
+
+        this.sweepX = Double.NaN;
+        this.step = 1;
+
+        for (int i = 0; i < n; i++) {
+            BOSegment s = input.get(i);
+
+            firstX[i] = s.first().x;
+            firstY[i] = s.first().y;
+            secondX[i] = s.second().x;
+            secondY[i] = s.second().y;
+
+            if (firstX[i] == secondX[i]) {
+                this.events.add(new BOEvent(s.first(), i, BOEvent.VERTICAL));
+            }
+            else {
+                slope[i] = (secondY[i] - firstY[i]) / (secondX[i] - firstX[i]);
+
+                this.events.add(new BOEvent(s.first(), i, BOEvent.START));
+                this.events.add(new BOEvent(s.second(), i, BOEvent.END));
+            }
+        }
+    }
+
+    public void findIntersections() {
+        while (!this.events.isEmpty()) {
+            BOEvent e = this.events.pollFirst();
+            double L = e.getValue();
+
+            switch (e.getType()) {
+                case BOEvent.START: {
+                    int s = e.getFirst();
+
+                    this.sweepTo(L, false);
+                    this.segments.add(s);
+
+                    Integer r = this.segments.lower(s);
+                    Integer t = this.segments.higher(s);
+
+                    if (r != null && t != null) {
+                        this.removeFuture(r, t);
+                    }
+
+                    if (r != null) {
+                        this.reportIntersection(r, s, L);
+                    }
+
+                    if (t != null) {
+                        this.reportIntersection(s, t, L);
+                    }
+                    break;
+                }
+                case BOEvent.END: {
+                    int s = e.getFirst();
+
+                    this.sweepTo(L, true);
+
+                    Integer r = this.segments.lower(s);
+                    Integer t = this.segments.higher(s);
+
+                    this.segments.remove(s);
+
+                    if (r != null && t != null) {
+                        this.reportIntersection(r, t, L);
+                    }
+                    break;
+                }
+                case BOEvent.INTERSECTION: {
+                    int s1 = e.getFirst();
+                    int s2 = e.getSecond();
+
+                    this.pendingIntersections.remove(key(s1, s2));
+                    this.points.add(e.getPoint());
+
+                    // Swap both segments, the one below becomes the one above
+                    this.sweepTo(L, true);
+
+                    Integer higher = this.segments.higher(s1);
+                    int above = higher != null && higher == s2 ? s1 : s2;
+                    int below = above == s1 ? s2 : s1;
+
+                    Integer r = this.segments.lower(above);
+                    Integer t = this.segments.higher(below);
+
+                    this.segments.remove(s1);
+                    this.segments.remove(s2);
+
+                    this.sweepTo(L, false);
+                    this.segments.add(s1);
+                    this.segments.add(s2);
+
+                    if (r != null) {
+                        this.removeFuture(r, above);
+                        this.reportIntersection(r, below, L);
+                    }
+
+                    if (t != null) {
+                        this.removeFuture(below, t);
+                        this.reportIntersection(above, t, L);
+                    }
+                    break;
+                }
+                case BOEvent.VERTICAL: {
+                    int s = e.getFirst();
+
+                    this.sweepTo(L, false);
+
+                    probeY = Math.min(firstY[s], secondY[s]);
+                    double maxY = Math.max(firstY[s], secondY[s]);
+
+                    for (int t : this.segments.tailSet(probe, false)) {
+                        if (this.yAt(t) > maxY + tolerance * (1 + Math.abs(maxY))) {
+                            break;
+                        }
+
+                        BOPoint point = this.intersection(s, t);
+                        if (point != null) {
+                            this.points.add(point);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private long key(int s1, int s2) {
+        return (long) Math.min(s1, s2) * n + Math.max(s1, s2);
+    }
+
+    private void sweepTo(double x, boolean before) {
+        if (x != this.sweepX) {
+            this.sweepX = x;
+            this.step++;
+        }
+
+        this.beforeSweep = before;
+    }
+
+    private double yAt(int s) {
+        if (s == probe) {
+            return probeY;
+        }
+
+        if (sweepStep[s] != step) {
+            sweepY[s] = firstY[s] + slope[s] * (sweepX - firstX[s]);
+            sweepStep[s] = step;
+        }
+
+        return sweepY[s];
+    }
+
+    private BOPoint intersection(int a, int b) {
+        BOSegment s1 = input.get(Math.min(a, b));
+        BOSegment s2 = input.get(Math.max(a, b));
+
+        double x1 = s1.first().x;
+        double y1 = s1.first().y;
+        double x2 = s1.second().x;
+        double y2 = s1.second().y;
+        double x3 = s2.first().x;
+        double y3 = s2.first().y;
+        double x4 = s2.second().x;
+        double y4 = s2.second().y;
+
+        double r = (x2 - x1) * (y4 - y3) - (y2 - y1) * (x4 - x3);
+
+        if (r != 0) {
+            double t = ((x3 - x1) * (y4 - y3) - (y3 - y1) * (x4 - x3)) / r;
+            double u = ((x3 - x1) * (y2 - y1) - (y3 - y1) * (x2 - x1)) / r;
+
+            if (t >= 0 && t <= 1 && u >= 0 && u <= 1) {
+                return new BOPoint(x1 + t * (x2 - x1), y1 + t * (y2 - y1));
+            }
+        }
+
+        return null;
+    }
+
+    private boolean reportIntersection(int s1, int s2, double l) {
+        long key = key(s1, s2);
+
+        // Two segments cross at most once
+        if (this.reportedIntersections.contains(key)) {
+            return false;
+        }
+
+        BOPoint point = this.intersection(s1, s2);
+
+        if (point != null && point.x > l) {
+            BOEvent event = new BOEvent(point, Math.min(s1, s2), Math.max(s1, s2), BOEvent.INTERSECTION);
+
+            this.events.add(event);
+            this.pendingIntersections.put(key, event);
+            this.reportedIntersections.add(key);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean removeFuture(int s1, int s2) {
+        long key = key(s1, s2);
+        BOEvent e = this.pendingIntersections.remove(key);
+
+        if (e != null) {
+            this.events.remove(e);
+            this.reportedIntersections.remove(key);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public ArrayList<BOPoint> getIntersections() {
+        return this.points;
+    }
+
+    private static int typeOrder(int type) {
+        // Starts first and ends last, so segments touching at x meet
+        switch (type) {
+            case BOEvent.START:
+                return 0;
+            case BOEvent.INTERSECTION:
+                return 1;
+            case BOEvent.VERTICAL:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    private class BOEventComparator implements Comparator<BOEvent> {
+        @Override
+        public int compare(BOEvent e1, BOEvent e2) {
+            int result = Double.compare(e1.getValue(), e2.getValue());
+
+            if (result == 0) {
+                result = Integer.compare(typeOrder(e1.getType()), typeOrder(e2.getType()));
+            }
+
+            if (result == 0) {
+                result = Double.compare(e1.getPoint().y, e2.getPoint().y);
+            }
+
+            if (result == 0) {
+                result = Integer.compare(e1.getFirst(), e2.getFirst());
+            }
+
+            if (result == 0) {
+                result = Integer.compare(e1.getSecond(), e2.getSecond());
+            }
+
+            return result;
+        }
+    }
+
+    private class BOSegmentComparator implements Comparator<Integer> {
+        @Override
+        public int compare(Integer s1, Integer s2) {
+            if (s1.intValue() == s2.intValue()) {
+                return 0;
+            }
+
+            double v1 = yAt(s1);
+            double v2 = yAt(s2);
+
+            if (Math.abs(v1 - v2) > tolerance * (1 + Math.abs(v1) + Math.abs(v2))) {
+                return v1 < v2 ? -1 : 1;
+            }
+
+            // The probe goes before every segment at its height
+            if (s1 == probe) {
+                return -1;
+            }
+
+            if (s2 == probe) {
+                return 1;
+            }
+
+            int result = Double.compare(slope[s1], slope[s2]);
+            if (result != 0) {
+                return beforeSweep ? -result : result;
+            }
+
+            return Integer.compare(s1, s2);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types;
+
+public class BOEvent {
+
+    public static final int START = 0;
+    public static final int END = 1;
+    public static final int INTERSECTION = 2;
+    public static final int VERTICAL = 3;
+
+    private BOPoint point;
+    private double value;
+    private int type;
+
+    // Segment indices, second is only used by intersection events
+    private int first;
+    private int second;
+
+    public BOEvent(BOPoint point, int segment, int type) {
+        this(point, segment, -1, type);
+    }
+
+    public BOEvent(BOPoint point, int first, int second, int type) {
+        this.point = point;
+        this.first = first;
+        this.second = second;
+        this.value = point.x;
+        this.type = type;
+    }
+
+    public BOPoint getPoint() {
+        return this.point;
+    }
+
+    public int getFirst() {
+        return this.first;
+    }
+
+    public int getSecond() {
+        return this.second;
+    }
+
+    public int getType() {
+        return this.type;
+    }
+
+    public double getValue() {
+        return this.value;
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+/*
+ * Convex polygon with integer vertices stored in primitive arrays.
+ *
+ * offsetQuad grows a convex quadrilateral the same way ClipperOffset does
+ * with JoinType.MITER, EndType.CLOSED_POLYGON and the default miter limit
+ * (2): vertex by vertex, with the same rounding, so the offset polygon covers
+ * exactly the same lattice points as the one returned by Clipper. Vertices
+ * are kept in the order Clipper returns them: negative orientation, without
+ * collinear vertices and ending at the top-most (then right-most) vertex.
+ */
+public class ConvexPolygon {
+
+    private static final int maximumVertices = 8;
+
+    // ClipperOffset uses 2 / miterLimit^2, capped at 0.5
+    private static final double miterLimit = 0.5;
+
+    private final long[] xs;
+    private final long[] ys;
+    private int size;
+
+    private ConvexPolygon(int capacity) {
+        xs = new long[capacity];
+        ys = new long[capacity];
+        size = 0;
+    }
+
+    private void add(long x, long y) {
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getX(int i) {
+        return xs[i];
+    }
+
+    public long getY(int i) {
+        return ys[i];
+    }
+
+    /*
+     * Unsigned area, with the same arithmetic as Imgproc.contourArea.
+     */
+    public double area() {
+        return area(xs, ys, size);
+    }
+
+    public static double area(long[] xs, long[] ys, int size) {
+        double area = 0;
+        int previous = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            area += (double) xs[previous] * ys[i] - (double) ys[previous] * xs[i];
+            previous = i;
+        }
+
+        return Math.abs(area * 0.5);
+    }
+
+    /*
+     * True when the point is inside the polygon or on its boundary, the
+     * equivalent of Path.isPointInPolygon(point) != 0.
+     */
+    public boolean contains(long x, long y) {
+        int previous = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            long cross = (xs[i] - xs[previous]) * (y - ys[previous]) - (ys[i] - ys[previous]) * (x - xs[previous]);
+
+            if (cross > 0) {
+                return false;
+            }
+
+            previous = i;
+        }
+
+        return true;
+    }
+
+    /*
+     * Offsets the quadrilateral (xs[i], ys[i]) outwards by delta > 0.
+     *
+     * Returns null when the quad is not strictly convex, or when rounding
+     * would make the offset polygon non convex; in those cases callers must
+     * fall back to ClipperOffset.
+     */
+    public static ConvexPolygon offsetQuad(long[] xs, long[] ys, double delta) {
+        if (xs.length != 4 || ys.length != 4 || !(delta > 0)) {
+            return null;
+        }
+
+        long[] px = new long[4];
+        long[] py = new long[4];
+
+        // Clipper reverses the path when its orientation is negative
+        boolean reverse = signedArea(xs, ys) < 0;
+        for (int i = 0; i < 4; i++) {
+            px[i] = reverse ? xs[3 - i] : xs[i];
+            py[i] = reverse ? ys[3 - i] : ys[i];
+        }
+
+        if (!isStrictlyConvex(px, py, 4)) {
+            return null;
+        }
+
+        double[] nx = new double[4];
+        double[] ny = new double[4];
+        for (int j = 0; j < 4; j++) {
+            int next = (j + 1) % 4;
+
+            double dx = px[next] - px[j];
+            double dy = py[next] - py[j];
+            double f = 1 * 1.0 / Math.sqrt(dx * dx + dy * dy);
+
+            nx[j] = dy * f;
+            ny[j] = -dx * f;
+        }
+
+        ConvexPolygon polygon = new ConvexPolygon(maximumVertices);
+
+        int k = 3;
+        for (int j = 0; j < 4; j++) {
+            double inA = nx[k] * ny[j] - nx[j] * ny[k];
+
+            if (Math.abs(inA * delta) < 1.0) {
+                double cosA = nx[k] * nx[j] + ny[j] * ny[k];
+
+                // Almost collinear edges: a single vertex, and k is kept
+                if (cosA > 0) {
+                    polygon.add(round(px[j] + nx[k] * delta), round(py[j] + ny[k] * delta));
+                    continue;
+                }
+            }
+            else if (inA > 1.0) {
+                inA = 1.0;
+            }
+            else if (inA < -1.0) {
+                inA = -1.0;
+            }
+
+            if (inA * delta < 0) {
+                return null;
+            }
+
+            double r = 1 + nx[j] * nx[k] + ny[j] * ny[k];
+            if (r >= miterLimit) {
+                double q = delta / r;
+
+                polygon.add(round(px[j] + (nx[k] + nx[j]) * q), round(py[j] + (ny[k] + ny[j]) * q));
+            }
+            else {
+                // Squared corner
+                double dx = Math.tan(Math.atan2(inA, nx[k] * nx[j] + ny[k] * ny[j]) / 4);
+
+                polygon.add(round(px[j] + delta * (nx[k] - ny[k] * dx)), round(py[j] + delta * (ny[k] + nx[k] * dx)));
+                polygon.add(round(px[j] + delta * (nx[j] + ny[j] * dx)), round(py[j] + delta * (ny[j] - nx[j] * dx)));
+            }
+
+            k = j;
+        }
+
+        if (!isConvex(polygon.xs, polygon.ys, polygon.size)) {
+            return null;
+        }
+
+        return polygon.toClipperOrder();
+    }
+
+    /*
+     * Drops collinear vertices and reverses the (positively oriented)
+     * polygon, rotated so that it ends at the top-most, right-most vertex.
+     */
+    private ConvexPolygon toClipperOrder() {
+        ConvexPolygon simplified = new ConvexPolygon(size);
+        for (int i = 0; i < size; i++) {
+            if (cross(xs, ys, (i + size - 1) % size, i, (i + 1) % size) != 0) {
+                simplified.add(xs[i], ys[i]);
+            }
+        }
+
+        int n = simplified.size;
+
+        int top = 0;
+        for (int i = 1; i < n; i++) {
+            if (simplified.ys[i] < simplified.ys[top] ||
+                    simplified.ys[i] == simplified.ys[top] && simplified.xs[i] > simplified.xs[top]) {
+                top = i;
+            }
+        }
+
+        ConvexPolygon reversed = new ConvexPolygon(n);
+        for (int i = 0; i < n; i++) {
+            int j = ((top - 1 - i) % n + n) % n;
+            reversed.add(simplified.xs[j], simplified.ys[j]);
+        }
+
+        return reversed;
+    }
+
+    private static long round(double value) {
+        return (int) Math.round(value);
+    }
+
+    // Twice the signed area with the sign convention of Path.area
+    private static double signedArea(long[] xs, long[] ys) {
+        double a = 0;
+
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            a += ((double) xs[j] + xs[i]) * ((double) ys[j] - ys[i]);
+        }
+
+        return -a;
+    }
+
+    private static long cross(long[] xs, long[] ys, int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[b]) - (ys[b] - ys[a]) * (xs[c] - xs[b]);
+    }
+
+    private static boolean isStrictlyConvex(long[] xs, long[] ys, int size) {
+        for (int i = 0; i < size; i++) {
+            if (cross(xs, ys, i, (i + 1) % size, (i + 2) % size) <= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Every turn is to the same side or straight ahead (collinear vertices
+     * are allowed, duplicated vertices and reversals are not).
+     */
+    private static boolean isConvex(long[] xs, long[] ys, int size) {
+        for (int i = 0; i < size; i++) {
+            int b = (i + 1) % size;
+            int c = (i + 2) % size;
+
+            if (xs[i] == xs[b] && ys[i] == ys[b]) {
+                return false;
+            }
+
+            long cross = cross(xs, ys, i, b, c);
+            if (cross < 0) {
+                return false;
+            }
+
+            if (cross == 0) {
+                long dot = (xs[b] - xs[i]) * (xs[c] - xs[b]) + (ys[b] - ys[i]) * (ys[c] - ys[b]);
+
+                if (dot <= 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import java.util.List;
+
+/*
+ * Intersections between two families of segments (the horizontal and the
+ * vertical lines found by SLID). Segments are kept as structure of arrays
+ * with their bounding boxes, every horizontal x vertical pair is tested in
+ * a single loop and pairs whose boxes do not overlap are skipped before the
+ * exact test. Segments inside the same family are never intersected.
+ *
+ * Points are written to a reusable buffer as x0, y0, x1, y1, ...
+ */
+public class FamilyIntersector {
+
+    private final Family horizontal = new Family();
+    private final Family vertical = new Family();
+
+    private double[] points = new double[0];
+    private int count = 0;
+
+    public int intersect(List<double[]> horizontalSegments, List<double[]> verticalSegments) {
+        horizontal.load(horizontalSegments);
+        vertical.load(verticalSegments);
+
+        count = 0;
+
+        for (int h = 0; h < horizontal.size; h++) {
+            double x1 = horizontal.x1[h];
+            double y1 = horizontal.y1[h];
+            double x2 = horizontal.x2[h];
+            double y2 = horizontal.y2[h];
+            double minY = horizontal.minY[h];
+            double maxY = horizontal.maxY[h];
+
+            for (int v = 0; v < vertical.size; v++) {
+                // Bounding box culling, x1 <= x2 in both families
+                if (vertical.x2[v] < x1 || vertical.x1[v] > x2 || vertical.maxY[v] < minY || vertical.minY[v] > maxY) {
+                    continue;
+                }
+
+                double x3 = vertical.x1[v];
+                double y3 = vertical.y1[v];
+                double x4 = vertical.x2[v];
+                double y4 = vertical.y2[v];
+
+                double r = (x2 - x1) * (y4 - y3) - (y2 - y1) * (x4 - x3);
+
+                if (r == 0) {
+                    continue;
+                }
+
+                double t = ((x3 - x1) * (y4 - y3) - (y3 - y1) * (x4 - x3)) / r;
+                double u = ((x3 - x1) * (y2 - y1) - (y3 - y1) * (x2 - x1)) / r;
+
+                if (t >= 0 && t <= 1 && u >= 0 && u <= 1) {
+                    add(x1 + t * (x2 - x1), y1 + t * (y2 - y1));
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private void add(double x, double y) {
+        if (2 * count + 2 > points.length) {
+            double[] grown = new double[Math.max(64, 2 * points.length)];
+            System.arraycopy(points, 0, grown, 0, 2 * count);
+            points = grown;
+        }
+
+        points[2 * count] = x;
+        points[2 * count + 1] = y;
+        count++;
+    }
+
+    /*
+     * Interleaved coordinates, only the first 2 * getCount() are valid.
+     */
+    public double[] getPoints() {
+        return points;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private static class Family {
+
+        int size = 0;
+
+        // End points ordered by x, as BOSegment.first() and second()
+        double[] x1 = new double[0];
+        double[] y1 = new double[0];
+        double[] x2 = new double[0];
+        double[] y2 = new double[0];
+        double[] minY = new double[0];
+        double[] maxY = new double[0];
+
+        void load(List<double[]> segments) {
+            size = segments.size();
+
+            if (x1.length < size) {
+                x1 = new double[size];
+                y1 = new double[size];
+                x2 = new double[size];
+                y2 = new double[size];
+                minY = new double[size];
+                maxY = new double[size];
+            }
+
+            int i = 0;
+            for (double[] segment : segments) {
+                boolean ordered = segment[0] <= segment[2];
+
+                x1[i] = ordered ? segment[0] : segment[2];
+                y1[i] = ordered ? segment[1] : segment[3];
+                x2[i] = ordered ? segment[2] : segment[0];
+                y2[i] = ordered ? segment[3] : segment[1];
+                minY[i] = Math.min(segment[1], segment[3]);
+                maxY[i] = Math.max(segment[1], segment[3]);
+
+                i++;
+            }
+        }
+
+    }
+
+}
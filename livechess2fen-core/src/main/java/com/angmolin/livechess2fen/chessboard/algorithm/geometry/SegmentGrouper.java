@@ -0,0 +1,398 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Groups the similar segments found by SLID. Segments are addressed by their
+ * index, groups are kept in an int[] union-find (path compression and union
+ * by rank) and their members in linked int lists, so joining two groups is
+ * O(1).
+ *
+ * Only segments of the same family are compared, and a pair can only be
+ * similar when both lines are almost parallel and close, the segments are
+ * bucketed by angle and line offset (distance of the line to the origin) and
+ * only the pairs in nearby buckets are tested with similarSegments.
+ *
+ * The groups are the same as joining every pair in index order: a segment
+ * already joined to a later one is not used again, and the members of the
+ * later segment go first.
+ */
+public class SegmentGrouper {
+
+    private static final int angleBuckets = 64;
+    private static final double offsetBucket = 32;
+
+    /*
+     * Two segments are similar when their average deviation is below
+     * 16 * min(da, db) / (da + db). The deviation is at least
+     * (da + db) * sin(angle) / 4, so they must satisfy sin(angle) < 16 / da,
+     * and the offsets of both lines can not differ in more than
+     * 16 + 2 * sin(angle / 2) * |midpoint|. Bounds are loosened by the margins
+     * below to absorb rounding errors.
+     */
+    private static final double maxDeviation = 16;
+    private static final double maxSine = 0.5;
+    private static final double relativeMargin = 1e-6;
+    private static final double absoluteMargin = 1e-3;
+
+    private double[][] segments;
+    private int n;
+
+    private double[] length;
+    private double[] ux;
+    private double[] uy;
+    private double[] offset;
+    private double[] radius;
+    private int[] angle;
+
+    private int[] parent;
+    private int[] rank;
+    private int[] label;
+    private boolean[] joined;
+
+    private int[] head;
+    private int[] tail;
+    private int[] next;
+
+    private int[] candidates;
+
+    private static double segmentLength(double[] segment) {
+        return Math.sqrt(Math.pow(segment[0] - segment[2], 2) + Math.pow(segment[1] - segment[3], 2));
+    }
+
+    private static double distance(double[] segment1, double[] segment2, int point, double dx) {
+        return Math.abs(
+                (segment1[2] - segment1[0]) * (segment1[1] - segment2[1 + 2 * point]) - (segment1[3] - segment1[1]) * (segment1[0] - segment2[0 + 2 * point])
+        ) / dx;
+    }
+
+    public static boolean similarSegments(double[] segment1, double[] segment2) {
+        if (segment1 == null || segment2 == null) {
+            return false;
+        }
+
+        double da = segmentLength(segment1);
+        double db = segmentLength(segment2);
+
+        double d1a = distance(segment1, segment2, 0, da);
+        double d2a = distance(segment1, segment2, 1, da);
+        double d1b = distance(segment2, segment1, 0, db);
+        double d2b = distance(segment2, segment1, 1, db);
+
+        double avgDev = 0.25 * (d1a + d1b + d2a + d2b) + 0.00001;
+        double delta = 0.0625 * (da + db);
+
+        return da / avgDev > delta && db / avgDev > delta;
+    }
+
+    /*
+     * Groups the segments, vertical[i] tells the family of segment i. Returns
+     * the members of every group, ordered by the first segment that was never
+     * joined to a later one.
+     */
+    public List<int[]> group(List<double[]> segmentList, boolean[] vertical) {
+        load(segmentList);
+
+        int[] verticals = new int[n];
+        int[] horizontals = new int[n];
+        int verticalCount = 0;
+        int horizontalCount = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (vertical[i]) {
+                verticals[verticalCount++] = i;
+            }
+            else {
+                horizontals[horizontalCount++] = i;
+            }
+        }
+
+        joinGroups(verticals, verticalCount);
+        joinGroups(horizontals, horizontalCount);
+
+        List<int[]> groups = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            if (joined[i]) {
+                continue;
+            }
+
+            int root = find(i);
+            int[] members = new int[size(root)];
+
+            int k = 0;
+            for (int m = head[root]; m != -1; m = next[m]) {
+                members[k++] = m;
+            }
+
+            groups.add(members);
+        }
+
+        return groups;
+    }
+
+    private void load(List<double[]> segmentList) {
+        n = segmentList.size();
+        segments = segmentList.toArray(new double[n][]);
+
+        length = new double[n];
+        ux = new double[n];
+        uy = new double[n];
+        offset = new double[n];
+        radius = new double[n];
+        angle = new int[n];
+
+        parent = new int[n];
+        rank = new int[n];
+        label = new int[n];
+        joined = new boolean[n];
+        head = new int[n];
+        tail = new int[n];
+        next = new int[n];
+
+        candidates = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            double[] segment = segments[i];
+
+            parent[i] = i;
+            label[i] = i;
+            head[i] = i;
+            tail[i] = i;
+            next[i] = -1;
+
+            length[i] = segmentLength(segment);
+
+            double dx = (segment[2] - segment[0]) / length[i];
+            double dy = (segment[3] - segment[1]) / length[i];
+
+            // Direction in [0, pi), the normal is (-dy, dx)
+            if (dy < 0 || (dy == 0 && dx < 0)) {
+                dx = -dx;
+                dy = -dy;
+            }
+
+            double mx = (segment[0] + segment[2]) / 2;
+            double my = (segment[1] + segment[3]) / 2;
+
+            ux[i] = dx;
+            uy[i] = dy;
+            offset[i] = -dy * mx + dx * my;
+            radius[i] = Math.sqrt(mx * mx + my * my);
+            angle[i] = Math.min(angleBuckets - 1, (int) (Math.atan2(dy, dx) / Math.PI * angleBuckets));
+        }
+    }
+
+    private boolean degenerate(int i) {
+        // Similarity divides by the length, these are never similar
+        return !(length[i] > 0) || Double.isInfinite(length[i]);
+    }
+
+    private int find(int k) {
+        int root = k;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+
+        while (parent[k] != root) {
+            int up = parent[k];
+            parent[k] = root;
+            k = up;
+        }
+
+        return root;
+    }
+
+    private int size(int root) {
+        int size = 0;
+        for (int m = head[root]; m != -1; m = next[m]) {
+            size++;
+        }
+
+        return size;
+    }
+
+    /*
+     * The group of a is appended to the group of b, which keeps its label.
+     */
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+
+        joined[label[ra]] = true;
+
+        int first = head[rb];
+        int last = tail[ra];
+        next[tail[rb]] = head[ra];
+
+        int newLabel = label[rb];
+        int root;
+
+        if (rank[ra] > rank[rb]) {
+            parent[rb] = ra;
+            root = ra;
+        }
+        else {
+            parent[ra] = rb;
+            if (rank[ra] == rank[rb]) {
+                rank[rb]++;
+            }
+            root = rb;
+        }
+
+        head[root] = first;
+        tail[root] = last;
+        label[root] = newLabel;
+    }
+
+    private static double maxSine(double length) {
+        return maxDeviation / length;
+    }
+
+    private static double maxOffset(double sine, double radius) {
+        // sin(angle / 2) <= sin(angle) / (2 * cos(angle / 2)) and cos(angle / 2) > 0.96
+        double halfSine = sine / 1.9;
+
+        return (maxDeviation + 2 * halfSine * radius) * (1 + relativeMargin) + absoluteMargin;
+    }
+
+    private boolean maybeSimilar(int i, int j) {
+        double sine = maxSine(Math.max(length[i], length[j]));
+
+        if (sine >= maxSine) {
+            return true;
+        }
+
+        double dot = ux[i] * ux[j] + uy[i] * uy[j];
+        double cross = Math.abs(ux[i] * uy[j] - uy[i] * ux[j]);
+
+        if (cross >= sine * (1 + relativeMargin) + absoluteMargin) {
+            return false;
+        }
+
+        double halfSine = cross / Math.sqrt(2 * (1 + Math.abs(dot)));
+        double offsetJ = dot < 0 ? -offset[j] : offset[j];
+
+        return Math.abs(offsetJ - offset[i]) <= (maxDeviation + 2 * halfSine * radius[j]) * (1 + relativeMargin) + absoluteMargin;
+    }
+
+    private void joinGroups(int[] family, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        double minOffset = Double.POSITIVE_INFINITY;
+        double maxOffset = Double.NEGATIVE_INFINITY;
+        double maxRadius = 0;
+
+        for (int k = 0; k < count; k++) {
+            int i = family[k];
+
+            if (!degenerate(i)) {
+                minOffset = Math.min(minOffset, offset[i]);
+                maxOffset = Math.max(maxOffset, offset[i]);
+                maxRadius = Math.max(maxRadius, radius[i]);
+            }
+        }
+
+        int offsetBuckets = minOffset > maxOffset ? 1 : 1 + (int) ((maxOffset - minOffset) / offsetBucket);
+
+        // Bucket members ordered by index, counting sort by cell
+        int[] cellStart = new int[angleBuckets * offsetBuckets + 1];
+        int[] cellOf = new int[count];
+
+        for (int k = 0; k < count; k++) {
+            int i = family[k];
+
+            if (degenerate(i)) {
+                cellOf[k] = -1;
+                continue;
+            }
+
+            int cell = angle[i] * offsetBuckets + offsetCell(offset[i], minOffset, offsetBuckets);
+            cellOf[k] = cell;
+            cellStart[cell + 1]++;
+        }
+
+        for (int c = 0; c < angleBuckets * offsetBuckets; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] cellItems = new int[cellStart[angleBuckets * offsetBuckets]];
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length);
+
+        for (int k = 0; k < count; k++) {
+            if (cellOf[k] != -1) {
+                cellItems[fill[cellOf[k]]++] = family[k];
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            int i = family[k];
+
+            if (joined[i] || degenerate(i)) {
+                continue;
+            }
+
+            int found = 0;
+            double sine = maxSine(length[i]);
+
+            if (sine >= maxSine) {
+                for (int l = k + 1; l < count; l++) {
+                    candidates[found++] = family[l];
+                }
+            }
+            else {
+                double range = maxOffset(sine, maxRadius);
+                int reach = (int) Math.ceil(Math.asin(Math.min(1, sine * (1 + relativeMargin) + absoluteMargin)) / Math.PI * angleBuckets);
+
+                for (int a = angle[i] - reach; a <= angle[i] + reach; a++) {
+                    // Crossing 0 or pi flips the normal and the offset
+                    int bucket = a;
+                    double center = offset[i];
+
+                    if (a < 0 || a >= angleBuckets) {
+                        bucket = a < 0 ? a + angleBuckets : a - angleBuckets;
+                        center = -center;
+                    }
+
+                    int from = offsetCell(center - range, minOffset, offsetBuckets);
+                    int to = offsetCell(center + range, minOffset, offsetBuckets);
+
+                    for (int o = from; o <= to; o++) {
+                        int cell = bucket * offsetBuckets + o;
+
+                        for (int c = cellStart[cell]; c < cellStart[cell + 1]; c++) {
+                            if (cellItems[c] > i) {
+                                candidates[found++] = cellItems[c];
+                            }
+                        }
+                    }
+                }
+
+                Arrays.sort(candidates, 0, found);
+            }
+
+            for (int c = 0; c < found; c++) {
+                int j = candidates[c];
+
+                if (joined[j]) {
+                    continue;
+                }
+
+                if (maybeSimilar(i, j) && similarSegments(segments[i], segments[j])) {
+                    union(i, j);
+                }
+            }
+        }
+    }
+
+    private static int offsetCell(double value, double minOffset, int offsetBuckets) {
+        double cell = Math.floor((value - minOffset) / offsetBucket);
+
+        return (int) Math.max(0, Math.min(offsetBuckets - 1, cell));
+    }
+
+}
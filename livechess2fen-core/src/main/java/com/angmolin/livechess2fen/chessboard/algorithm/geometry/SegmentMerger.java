@@ -0,0 +1,84 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import java.util.List;
+
+/*
+ * Merges a group of similar segments into a single one, without going
+ * through OpenCV. Every segment is sampled at the same points SLID used to
+ * generate, the line is fitted from the moments of those points as
+ * Imgproc.fitLine does with CV_DIST_L2, and the length comes from the extent
+ * of the points projected on that line. For almost collinear groups this
+ * half extent is the radius of the enclosing circle used before.
+ */
+public class SegmentMerger {
+
+    private static final int samples = 10;
+
+    public static double[] merge(List<double[]> segments, int[] group) {
+        double sx = 0;
+        double sy = 0;
+        double sxx = 0;
+        double syy = 0;
+        double sxy = 0;
+        int count = 0;
+
+        for (int k : group) {
+            double[] segment = segments.get(k);
+
+            for (int i = 0; i < samples; i++) {
+                double it = i * (1.0 / samples);
+
+                double x = segment[0] + (segment[2] - segment[0]) * it;
+                double y = segment[1] + (segment[3] - segment[1]) * it;
+
+                sx += x;
+                sy += y;
+                sxx += x * x;
+                syy += y * y;
+                sxy += x * y;
+            }
+
+            count += samples;
+        }
+
+        double cx = sx / count;
+        double cy = sy / count;
+
+        double dx2 = sxx / count - cx * cx;
+        double dy2 = syy / count - cy * cy;
+        double dxy = sxy / count - cx * cy;
+
+        double t = Math.atan2(2 * dxy, dx2 - dy2) / 2;
+        double vx = Math.cos(t);
+        double vy = Math.sin(t);
+
+        /*
+         * The samples of a segment go from its first point to 9 / 10 of it,
+         * both ends of that range bound its projection.
+         */
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double last = (samples - 1) * (1.0 / samples);
+
+        for (int k : group) {
+            double[] segment = segments.get(k);
+
+            double p1 = (segment[0] - cx) * vx + (segment[1] - cy) * vy;
+            double p2 = (segment[0] + (segment[2] - segment[0]) * last - cx) * vx + (segment[1] + (segment[3] - segment[1]) * last - cy) * vy;
+
+            min = Math.min(min, Math.min(p1, p2));
+            max = Math.max(max, Math.max(p1, p2));
+        }
+
+        double radius = (max - min) / 2;
+        double w = radius * (Math.PI / 2);
+
+        return new double[] {
+                cx - vx * w,
+                cy - vy * w,
+                cx + vx * w,
+                cy + vy * w
+        };
+    }
+
+}
@@ -0,0 +1,838 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.lattice;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/*
+ * Geometric test of LAPS for a small RGBA patch around a candidate lattice
+ * point, done in Java on reusable buffers. It follows the OpenCV pipeline it
+ * replaces step by step:
+ *
+ *  - cvtColor RGBA2GRAY, fixed point with 14 bits
+ *  - threshold with THRESH_OTSU
+ *  - Canny(0, 255), 3x3 Sobel with replicated border and L1 gradient
+ *  - dilate with a 1x1 kernel, which leaves the edges as they are
+ *  - copyMakeBorder of 255 and bitwise_not, regions between edges are the
+ *    foreground
+ *  - findContours RETR_EXTERNAL, CHAIN_APPROX_NONE
+ *  - minEnclosingCircle and approxPolyDP(0.1 * arcLength) of each contour
+ *
+ * A patch is a lattice point when exactly four of its regions are small
+ * quadrilaterals.
+ */
+public class LatticePatchAnalyzer {
+
+    public static final int quadrilateralsOfLatticePoint = 4;
+
+    private static final double maxQuadrilateralRadius = 14;
+
+    private static final int yuvShift = 14;
+    private static final int r2y = 4899;
+    private static final int g2y = 9617;
+    private static final int b2y = 1868;
+
+    private static final double fltEpsilon = 1.1920928955078125e-7;
+    private static final float circleEpsilon = 1.0e-4f;
+
+    private static final int cannyLow = 0;
+    private static final int cannyHigh = 255;
+
+    // Chain code directions as in OpenCV: right, up-right, up, ... down-right
+    private static final int[] codeX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int[] codeY = { 0, -1, -1, -1, 0, 1, 1, 1 };
+
+    private int cols;
+    private int rows;
+
+    private byte[] rgba = new byte[0];
+    private int[] gray = new int[0];
+    private int[] binary = new int[0];
+    private int[] magnitude = new int[0];
+    private int[] dx = new int[0];
+    private int[] dy = new int[0];
+    private byte[] edges = new byte[0];
+    private int[] histogram = new int[256];
+    private int threshold;
+
+    // Canny state, 0 not an edge, 1 candidate, 2 edge
+    private byte[] edgeMap = new byte[0];
+    private int[] stack = new int[0];
+
+    // Bordered mask, its regions and the background components
+    private boolean[] mask = new boolean[0];
+    private int[] region = new int[0];
+    private int[] background = new int[0];
+    private int[] queue = new int[0];
+
+    private int[] contourX = new int[0];
+    private int[] contourY = new int[0];
+    private int contourLength;
+
+    private int[] sliceStart = new int[0];
+    private int[] sliceEnd = new int[0];
+    private float[] approxX = new float[0];
+    private float[] approxY = new float[0];
+
+    private final float[] center = new float[2];
+
+    /*
+     * Copies a CV_8UC4 patch with a single bulk read.
+     */
+    public void load(Mat patch) {
+        if (patch.type() != CvType.CV_8UC4) {
+            throw new IllegalArgumentException("RGBA patch expected");
+        }
+
+        int size = patch.rows() * patch.cols() * 4;
+        if (rgba.length < size) {
+            rgba = new byte[size];
+        }
+
+        patch.get(0, 0, rgba);
+
+        load(rgba, patch.cols(), patch.rows());
+    }
+
+    public void load(byte[] pixels, int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+
+        int size = cols * rows;
+        int maskSize = (cols + 2) * (rows + 2);
+
+        if (gray.length < size) {
+            gray = new int[size];
+            binary = new int[size];
+            magnitude = new int[size];
+            dx = new int[size];
+            dy = new int[size];
+            edges = new byte[size];
+            edgeMap = new byte[size];
+            stack = new int[size];
+        }
+
+        if (mask.length < maskSize) {
+            mask = new boolean[maskSize];
+            region = new int[maskSize];
+            background = new int[maskSize];
+            queue = new int[maskSize];
+        }
+
+        for (int i = 0; i < size; i++) {
+            int r = pixels[4 * i] & 0xff;
+            int g = pixels[4 * i + 1] & 0xff;
+            int b = pixels[4 * i + 2] & 0xff;
+
+            gray[i] = (r * r2y + g * g2y + b * b2y + (1 << (yuvShift - 1))) >> yuvShift;
+        }
+
+        threshold = otsu();
+
+        for (int i = 0; i < size; i++) {
+            binary[i] = gray[i] > threshold ? 255 : 0;
+        }
+
+        canny();
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getGray(int row, int col) {
+        return gray[row * cols + col];
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /*
+     * Canny edges of the loaded patch, 255 on edges and 0 elsewhere, only the
+     * first getRows() * getCols() bytes are valid.
+     */
+    public byte[] getEdges() {
+        return edges;
+    }
+
+    /*
+     * The edges as a CV_8U Mat, for the LAPS classifier.
+     */
+    public Mat edgesMat(Mat edgesMat) {
+        edgesMat.create(rows, cols, CvType.CV_8U);
+        edgesMat.put(0, 0, edges);
+
+        return edgesMat;
+    }
+
+    private int otsu() {
+        int size = cols * rows;
+
+        for (int i = 0; i < 256; i++) {
+            histogram[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            histogram[gray[i]]++;
+        }
+
+        double mu = 0;
+        double scale = 1. / size;
+
+        for (int i = 0; i < 256; i++) {
+            mu += i * (double) histogram[i];
+        }
+
+        mu *= scale;
+
+        double mu1 = 0;
+        double q1 = 0;
+        double maxSigma = 0;
+        int maxValue = 0;
+
+        for (int i = 0; i < 256; i++) {
+            double p = histogram[i] * scale;
+
+            mu1 *= q1;
+            q1 += p;
+            double q2 = 1. - q1;
+
+            if (Math.min(q1, q2) < fltEpsilon || Math.max(q1, q2) > 1. - fltEpsilon) {
+                continue;
+            }
+
+            mu1 = (mu1 + i * p) / q1;
+            double mu2 = (mu - q1 * mu1) / q2;
+            double sigma = q1 * q2 * (mu1 - mu2) * (mu1 - mu2);
+
+            if (sigma > maxSigma) {
+                maxSigma = sigma;
+                maxValue = i;
+            }
+        }
+
+        return maxValue;
+    }
+
+    private int binaryAt(int row, int col) {
+        row = Math.max(0, Math.min(rows - 1, row));
+        col = Math.max(0, Math.min(cols - 1, col));
+
+        return binary[row * cols + col];
+    }
+
+    private int magnitudeAt(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return 0;
+        }
+
+        return magnitude[row * cols + col];
+    }
+
+    private void canny() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+
+                dx[i] = binaryAt(row - 1, col + 1) + 2 * binaryAt(row, col + 1) + binaryAt(row + 1, col + 1)
+                        - binaryAt(row - 1, col - 1) - 2 * binaryAt(row, col - 1) - binaryAt(row + 1, col - 1);
+                dy[i] = binaryAt(row + 1, col - 1) + 2 * binaryAt(row + 1, col) + binaryAt(row + 1, col + 1)
+                        - binaryAt(row - 1, col - 1) - 2 * binaryAt(row - 1, col) - binaryAt(row - 1, col + 1);
+
+                magnitude[i] = Math.abs(dx[i]) + Math.abs(dy[i]);
+            }
+        }
+
+        // Non maximum suppression, with the same neighbours and ties as OpenCV
+        final int tg22 = (int) (0.4142135623730950488016887242097 * (1 << 15) + 0.5);
+        int top = 0;
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+                int m = magnitude[i];
+
+                edgeMap[i] = 0;
+
+                if (m <= cannyLow) {
+                    continue;
+                }
+
+                int xs = dx[i];
+                int ys = dy[i];
+                long x = Math.abs(xs);
+                long y = ((long) Math.abs(ys)) << 15;
+                long tg22x = x * tg22;
+
+                boolean maximum;
+
+                if (y < tg22x) {
+                    maximum = m > magnitudeAt(row, col - 1) && m >= magnitudeAt(row, col + 1);
+                }
+                else {
+                    long tg67x = tg22x + (x << 16);
+
+                    if (y > tg67x) {
+                        maximum = m > magnitudeAt(row - 1, col) && m >= magnitudeAt(row + 1, col);
+                    }
+                    else {
+                        int s = (xs ^ ys) < 0 ? -1 : 1;
+                        maximum = m > magnitudeAt(row - 1, col - s) && m > magnitudeAt(row + 1, col + s);
+                    }
+                }
+
+                if (!maximum) {
+                    continue;
+                }
+
+                if (m > cannyHigh) {
+                    edgeMap[i] = 2;
+                    stack[top++] = i;
+                }
+                else {
+                    edgeMap[i] = 1;
+                }
+            }
+        }
+
+        // Hysteresis, candidates 8-connected to an edge become edges
+        while (top > 0) {
+            int i = stack[--top];
+            int row = i / cols;
+            int col = i % cols;
+
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                    int j = r * cols + c;
+
+                    if (edgeMap[j] == 1) {
+                        edgeMap[j] = 2;
+                        stack[top++] = j;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < rows * cols; i++) {
+            edges[i] = (byte) (edgeMap[i] == 2 ? 255 : 0);
+        }
+    }
+
+    /*
+     * Number of regions between edges which are quadrilaterals (4 vertices
+     * after approxPolyDP) with an enclosing circle of radius under 14.
+     */
+    public int countQuadrilaterals() {
+        int width = cols + 2;
+        int height = rows + 2;
+
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                boolean inside = row > 0 && row < height - 1 && col > 0 && col < width - 1;
+
+                mask[row * width + col] = inside && edges[(row - 1) * cols + col - 1] == 0;
+                region[row * width + col] = -1;
+                background[row * width + col] = -1;
+            }
+        }
+
+        // Background is 4-connected, the frame is the outermost component
+        int backgrounds = 0;
+        for (int i = 0; i < width * height; i++) {
+            if (!mask[i] && background[i] == -1) {
+                label(i, backgrounds++, width, height, false);
+            }
+        }
+
+        int regions = 0;
+        int quadrilaterals = 0;
+
+        for (int i = 0; i < width * height; i++) {
+            if (!mask[i] || region[i] != -1) {
+                continue;
+            }
+
+            /*
+             * i is the first pixel of an 8-connected region in raster order,
+             * the pixel at its left lies in the background around it. Only
+             * regions around which is the frame background are external.
+             */
+            label(i, regions++, width, height, true);
+
+            if (background[i - 1] != background[0]) {
+                continue;
+            }
+
+            traceOuterBorder(i, width);
+
+            if (isQuadrilateral()) {
+                quadrilaterals++;
+            }
+        }
+
+        return quadrilaterals;
+    }
+
+    private void label(int start, int label, int width, int height, boolean foreground) {
+        int[] labels = foreground ? region : background;
+        int head = 0;
+        int tail = 0;
+
+        labels[start] = label;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int i = queue[head++];
+            int row = i / width;
+            int col = i % width;
+
+            for (int r = row - 1; r <= row + 1; r++) {
+                for (int c = col - 1; c <= col + 1; c++) {
+                    if (r < 0 || r >= height || c < 0 || c >= width) {
+                        continue;
+                    }
+
+                    // Foreground is 8-connected and background 4-connected
+                    if (!foreground && r != row && c != col) {
+                        continue;
+                    }
+
+                    int j = r * width + c;
+
+                    if (mask[j] == foreground && labels[j] == -1) {
+                        labels[j] = label;
+                        queue[tail++] = j;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean foregroundAt(int x, int y, int width) {
+        return mask[y * width + x];
+    }
+
+    private void addContourPoint(int x, int y) {
+        if (contourLength == contourX.length) {
+            int capacity = Math.max(64, 2 * contourLength);
+
+            int[] grownX = new int[capacity];
+            int[] grownY = new int[capacity];
+            System.arraycopy(contourX, 0, grownX, 0, contourLength);
+            System.arraycopy(contourY, 0, grownY, 0, contourLength);
+
+            contourX = grownX;
+            contourY = grownY;
+        }
+
+        contourX[contourLength] = x;
+        contourY[contourLength] = y;
+        contourLength++;
+    }
+
+    /*
+     * Border following of the outer border starting at i, the points and
+     * their order are the ones of findContours with CHAIN_APPROX_NONE.
+     */
+    private void traceOuterBorder(int i, int width) {
+        contourLength = 0;
+
+        int x0 = i % width;
+        int y0 = i / width;
+
+        int s = 4;
+        int sEnd = 4;
+        int x1;
+        int y1;
+
+        do {
+            s = (s - 1) & 7;
+            x1 = x0 + codeX[s];
+            y1 = y0 + codeY[s];
+        }
+        while (!foregroundAt(x1, y1, width) && s != sEnd);
+
+        if (s == sEnd) {
+            addContourPoint(x0, y0);
+            return;
+        }
+
+        int x3 = x0;
+        int y3 = y0;
+
+        while (true) {
+            sEnd = s;
+
+            int x4 = x3;
+            int y4 = y3;
+
+            while (s < 15) {
+                s++;
+                x4 = x3 + codeX[s & 7];
+                y4 = y3 + codeY[s & 7];
+
+                if (foregroundAt(x4, y4, width)) {
+                    break;
+                }
+            }
+
+            s &= 7;
+
+            addContourPoint(x3, y3);
+
+            if (x4 == x0 && y4 == y0 && x3 == x1 && y3 == y1) {
+                break;
+            }
+
+            x3 = x4;
+            y3 = y4;
+            s = (s + 4) & 7;
+        }
+    }
+
+    private boolean isQuadrilateral() {
+        if (minEnclosingRadius() >= maxQuadrilateralRadius) {
+            return false;
+        }
+
+        return approxPolyVertices(0.1 * arcLength()) == 4;
+    }
+
+    private double arcLength() {
+        if (contourLength <= 1) {
+            return 0;
+        }
+
+        double perimeter = 0;
+        float prevX = contourX[contourLength - 1];
+        float prevY = contourY[contourLength - 1];
+
+        for (int i = 0; i < contourLength; i++) {
+            float x = contourX[i];
+            float y = contourY[i];
+            float dx = x - prevX;
+            float dy = y - prevY;
+
+            perimeter += (float) Math.sqrt(dx * dx + dy * dy);
+
+            prevX = x;
+            prevY = y;
+        }
+
+        return perimeter;
+    }
+
+    private static double norm(float x, float y) {
+        return Math.sqrt((double) x * x + (double) y * y);
+    }
+
+    /*
+     * minEnclosingCircle of the contour, with its float arithmetic.
+     */
+    private float minEnclosingRadius() {
+        int count = contourLength;
+
+        if (count == 1) {
+            return circleEpsilon;
+        }
+
+        if (count == 2) {
+            return (float) (norm((float) contourX[0] - contourX[1], (float) contourY[0] - contourY[1]) / 2.0) + circleEpsilon;
+        }
+
+        center[0] = (float) (contourX[0] + contourX[1]) / 2.0f;
+        center[1] = (float) (contourY[0] + contourY[1]) / 2.0f;
+        float radius = (float) norm((float) (contourX[0] - contourX[1]), (float) (contourY[0] - contourY[1])) / 2.0f + circleEpsilon;
+
+        for (int i = 2; i < count; i++) {
+            float dx = (float) contourX[i] - center[0];
+            float dy = (float) contourY[i] - center[1];
+            float t = (float) norm(dx, dy);
+
+            if (t >= radius) {
+                radius = findSecondPoint(i);
+            }
+        }
+
+        return radius;
+    }
+
+    private float findSecondPoint(int i) {
+        center[0] = (float) (contourX[0] + contourX[i]) / 2.0f;
+        center[1] = (float) (contourY[0] + contourY[i]) / 2.0f;
+        float radius = (float) norm((float) (contourX[0] - contourX[i]), (float) (contourY[0] - contourY[i])) / 2.0f + circleEpsilon;
+
+        for (int j = 1; j < i; j++) {
+            float dx = center[0] - (float) contourX[j];
+            float dy = center[1] - (float) contourY[j];
+
+            if (norm(dx, dy) >= radius) {
+                radius = findThirdPoint(i, j);
+            }
+        }
+
+        return radius;
+    }
+
+    private float findThirdPoint(int i, int j) {
+        center[0] = (float) (contourX[j] + contourX[i]) / 2.0f;
+        center[1] = (float) (contourY[j] + contourY[i]) / 2.0f;
+        float radius = (float) norm((float) (contourX[j] - contourX[i]), (float) (contourY[j] - contourY[i])) / 2.0f + circleEpsilon;
+
+        for (int k = 0; k < j; k++) {
+            float dx = center[0] - (float) contourX[k];
+            float dy = center[1] - (float) contourY[k];
+
+            if (norm(dx, dy) >= radius) {
+                radius = findCircle3pts(contourX[i], contourY[i], contourX[j], contourY[j], contourX[k], contourY[k]);
+            }
+        }
+
+        return radius;
+    }
+
+    private float findCircle3pts(float x0, float y0, float x1, float y1, float x2, float y2) {
+        float v1x = x1 - x0;
+        float v1y = y1 - y0;
+        float v2x = x2 - x0;
+        float v2y = y2 - y0;
+
+        if ((double) v1x * v2y - (double) v1y * v2x == 0.0) {
+            // Degenerate triangle, circle of the two most distant points
+            float d1 = (float) norm(x0 - x1, y0 - y1);
+            float d2 = (float) norm(x0 - x2, y0 - y2);
+            float d3 = (float) norm(x1 - x2, y1 - y2);
+
+            if (d1 >= d2 && d1 >= d3) {
+                center[0] = (x0 + x1) / 2.0f;
+                center[1] = (y0 + y1) / 2.0f;
+                return d1 / 2.0f;
+            }
+            else if (d2 >= d1 && d2 >= d3) {
+                center[0] = (x0 + x2) / 2.0f;
+                center[1] = (y0 + y2) / 2.0f;
+                return d2 / 2.0f;
+            }
+            else {
+                center[0] = (x1 + x2) / 2.0f;
+                center[1] = (y1 + y2) / 2.0f;
+                return d3 / 2.0f;
+            }
+        }
+
+        // Intersection of the perpendicular bisectors of both edges
+        float m1x = (x0 + x1) / 2.0f;
+        float m1y = (y0 + y1) / 2.0f;
+        float c1 = m1x * v1x + m1y * v1y;
+        float m2x = (x0 + x2) / 2.0f;
+        float m2y = (y0 + y2) / 2.0f;
+        float c2 = m2x * v2x + m2y * v2y;
+        float det = v1x * v2y - v1y * v2x;
+        float cx = (c1 * v2y - c2 * v1y) / det;
+        float cy = (v1x * c2 - v2x * c1) / det;
+
+        center[0] = cx;
+        center[1] = cy;
+
+        cx -= x0;
+        cy -= y0;
+
+        return (float) Math.sqrt(cx * cx + cy * cy) + circleEpsilon;
+    }
+
+    /*
+     * Vertices left by approxPolyDP on the closed contour, the same Douglas
+     * Peucker splitting and final clean-up as OpenCV.
+     */
+    private int approxPolyVertices(double eps) {
+        int count = contourLength;
+
+        if (count == 0) {
+            return 0;
+        }
+
+        if (sliceStart.length < count + 2) {
+            sliceStart = new int[count + 2];
+            sliceEnd = new int[count + 2];
+            approxX = new float[count];
+            approxY = new float[count];
+        }
+
+        eps *= eps;
+
+        int top = 0;
+        int newCount = 0;
+        int pos = 0;
+        int rightStart = 0;
+        boolean leEps = false;
+
+        float startX = 0;
+        float startY = 0;
+
+        // 1. Find approximately the two farthest points of the contour
+        for (int iteration = 0; iteration < 3; iteration++) {
+            double maxDist = 0;
+
+            pos = (pos + rightStart) % count;
+            startX = contourX[pos];
+            startY = contourY[pos];
+            pos = (pos + 1) % count;
+
+            for (int j = 1; j < count; j++) {
+                float x = contourX[pos];
+                float y = contourY[pos];
+                pos = (pos + 1) % count;
+
+                double dx = x - startX;
+                double dy = y - startY;
+                double dist = dx * dx + dy * dy;
+
+                if (dist > maxDist) {
+                    maxDist = dist;
+                    rightStart = j;
+                }
+            }
+
+            leEps = maxDist <= eps;
+        }
+
+        // 2. Initialize the stack
+        if (!leEps) {
+            int start = pos % count;
+            int end = (rightStart + start) % count;
+
+            sliceStart[top] = end;
+            sliceEnd[top] = start;
+            top++;
+
+            sliceStart[top] = start;
+            sliceEnd[top] = end;
+            top++;
+        }
+        else {
+            approxX[newCount] = startX;
+            approxY[newCount] = startY;
+            newCount++;
+        }
+
+        // 3. Split the slices recursively
+        while (top > 0) {
+            top--;
+            int start = sliceStart[top];
+            int end = sliceEnd[top];
+
+            float endX = contourX[end];
+            float endY = contourY[end];
+
+            pos = start;
+            startX = contourX[pos];
+            startY = contourY[pos];
+            pos = (pos + 1) % count;
+
+            if (pos != end) {
+                double dx = endX - startX;
+                double dy = endY - startY;
+                double maxDist = 0;
+
+                while (pos != end) {
+                    float x = contourX[pos];
+                    float y = contourY[pos];
+                    pos = (pos + 1) % count;
+
+                    double dist = Math.abs((y - startY) * dx - (x - startX) * dy);
+
+                    if (dist > maxDist) {
+                        maxDist = dist;
+                        rightStart = (pos + count - 1) % count;
+                    }
+                }
+
+                leEps = maxDist * maxDist <= eps * (dx * dx + dy * dy);
+            }
+            else {
+                leEps = true;
+                startX = contourX[start];
+                startY = contourY[start];
+            }
+
+            if (leEps) {
+                approxX[newCount] = startX;
+                approxY[newCount] = startY;
+                newCount++;
+            }
+            else {
+                sliceStart[top] = rightStart;
+                sliceEnd[top] = end;
+                top++;
+
+                sliceStart[top] = start;
+                sliceEnd[top] = rightStart;
+                top++;
+            }
+        }
+
+        // 4. Remove the points left on almost straight lines
+        count = newCount;
+        pos = count - 1;
+
+        float sx = approxX[pos];
+        float sy = approxY[pos];
+        if (++pos >= count) {
+            pos = 0;
+        }
+        int wpos = pos;
+
+        float px = approxX[pos];
+        float py = approxY[pos];
+        if (++pos >= count) {
+            pos = 0;
+        }
+
+        for (int i = 0; i < count && newCount > 2; i++) {
+            float ex = approxX[pos];
+            float ey = approxY[pos];
+            if (++pos >= count) {
+                pos = 0;
+            }
+
+            double dx = ex - sx;
+            double dy = ey - sy;
+            double dist = Math.abs((px - sx) * dy - (py - sy) * dx);
+            double successiveInnerProduct = (px - sx) * (ex - px) + (py - sy) * (ey - py);
+
+            if (dist * dist <= 0.5 * eps * (dx * dx + dy * dy) && dx != 0 && dy != 0 && successiveInnerProduct >= 0) {
+                newCount--;
+
+                approxX[wpos] = sx = ex;
+                approxY[wpos] = sy = ey;
+                if (++wpos >= count) {
+                    wpos = 0;
+                }
+
+                px = approxX[pos];
+                py = approxY[pos];
+                if (++pos >= count) {
+                    pos = 0;
+                }
+
+                i++;
+                continue;
+            }
+
+            approxX[wpos] = sx = px;
+            approxY[wpos] = sy = py;
+            if (++wpos >= count) {
+                wpos = 0;
+            }
+
+            px = ex;
+            py = ey;
+        }
+
+        return newCount;
+    }
+
+}
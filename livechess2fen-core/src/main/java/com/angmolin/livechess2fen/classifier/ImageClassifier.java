@@ -1,11 +1,20 @@
 package com.angmolin.livechess2fen.classifier;
 
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.util.List;
 
 public interface ImageClassifier {
 
+    Size getInputSize();
+
     int classifyAndGetMax(Mat image);
 
     float[] classifyAndGetResult(Mat image);
 
+    float[] classifyBatch(List<Mat> images);
+
+    int[] classifyBatchAndGetMax(List<Mat> images);
+
 }
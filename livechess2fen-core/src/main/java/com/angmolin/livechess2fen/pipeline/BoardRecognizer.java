@@ -0,0 +1,133 @@
+package com.angmolin.livechess2fen.pipeline;
+
+import com.angmolin.livechess2fen.BoardTensorizer;
+import com.angmolin.livechess2fen.Fen;
+import com.angmolin.livechess2fen.PiecesInferrer;
+import com.angmolin.livechess2fen.SquareChangeDetector;
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+import com.angmolin.livechess2fen.types.MatArena;
+
+import org.opencv.core.Mat;
+
+import java.util.List;
+
+/*
+ * Image to FEN recognition, only depends on OpenCV and the classifiers.
+ *
+ * Each stage only touches its own state, so FramePipeline runs them on
+ * different threads, while recognize runs all of them on the calling one.
+ */
+public class BoardRecognizer {
+
+    private final ChessboardDetector chessboardDetector;
+    private final ImageClassifier piecesClassifier;
+    private final Fen.A1Pos a1Pos;
+
+    // Detect stage state
+    private List<double[]> lastFourPoints;
+
+    // Classify stage state, squares are warped when it reads them
+    private final SquareChangeDetector squareChangeDetector = new SquareChangeDetector();
+    private final BoardTensorizer boardTensorizer;
+
+    private long recognizedFrames = 0;
+
+    public BoardRecognizer(ChessboardDetector chessboardDetector, ImageClassifier piecesClassifier, Fen.A1Pos a1Pos) {
+        this.chessboardDetector = chessboardDetector;
+        this.piecesClassifier = piecesClassifier;
+        this.a1Pos = a1Pos;
+
+        boardTensorizer = new BoardTensorizer(piecesClassifier.getInputSize());
+    }
+
+    public BoardRecognizer(ImageClassifier lapsClassifier, ImageClassifier piecesClassifier) {
+        this(new ChessboardDetector(lapsClassifier), piecesClassifier, Fen.A1Pos.BottomLeft);
+    }
+
+    public ChessboardDetector getChessboardDetector() {
+        return chessboardDetector;
+    }
+
+    /*
+     * Forgets the previous frames, the next one is searched from scratch.
+     */
+    public void reset() {
+        lastFourPoints = null;
+        chessboardDetector.tracker.reset();
+        squareChangeDetector.reset();
+    }
+
+    /*
+     * Runs every stage on the frame, which is copied. The returned job holds
+     * the FEN and the intermediate results, its Mats are valid until
+     * job.release() is called.
+     */
+    @SuppressWarnings("try")
+    public FrameJob recognize(Mat frame) {
+        FrameJob job = new FrameJob(++recognizedFrames, frame, FrameJob.uptimeMillis());
+
+        /* Only entered, so the Mats the stages allocate go to the job arena */
+        try (MatArena.Scope scope = job.arena.enter()) {
+            detect(job);
+            split(job);
+            classify(job);
+            infer(job);
+        }
+        catch (RuntimeException e) {
+            job.release();
+            throw e;
+        }
+
+        return job;
+    }
+
+    public void detect(FrameJob job) {
+        long startTime = FrameJob.uptimeMillis();
+
+        job.imageObject = chessboardDetector.detect(job.frame, lastFourPoints);
+        job.fourPointsCornerPoints = chessboardDetector.computeCorners(job.imageObject);
+        lastFourPoints = job.fourPointsCornerPoints.first;
+        job.trackingState = chessboardDetector.tracker.getState();
+
+        job.detectTime = FrameJob.uptimeMillis() - startTime;
+    }
+
+    /*
+     * Only prepares the squares, they are warped when classify reads them
+     * and that time is added to splitTime there.
+     */
+    public void split(FrameJob job) {
+        long startTime = FrameJob.uptimeMillis();
+
+        job.squares = boardTensorizer.squares(job.imageObject);
+
+        job.splitTime = FrameJob.uptimeMillis() - startTime;
+    }
+
+    public void classify(FrameJob job) {
+        long startTime = FrameJob.uptimeMillis();
+        long warpStart = boardTensorizer.getWarpNanos();
+
+        job.cnnResults = squareChangeDetector.classify(piecesClassifier, job.imageObject.last().original, job.squares);
+        job.changedSquares = squareChangeDetector.getLastChangedSquares();
+        job.squareHitRatio = squareChangeDetector.getHitRatio();
+
+        // The squares are warped as they are read here, that time is the split
+        long warpTime = (boardTensorizer.getWarpNanos() - warpStart) / 1000000;
+
+        job.splitTime += warpTime;
+        job.classifyTime = Math.max(0, FrameJob.uptimeMillis() - startTime - warpTime);
+    }
+
+    public void infer(FrameJob job) {
+        long startTime = FrameJob.uptimeMillis();
+
+        job.boardArray = PiecesInferrer.inferChessPieces(job.cnnResults, a1Pos, null);
+        job.fen = Fen.boardToFen(job.boardArray);
+
+        job.inferTime = FrameJob.uptimeMillis() - startTime;
+        job.finishTimestamp = FrameJob.uptimeMillis();
+    }
+
+}
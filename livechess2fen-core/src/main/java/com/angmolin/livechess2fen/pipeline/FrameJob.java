@@ -0,0 +1,60 @@
+package com.angmolin.livechess2fen.pipeline;
+
+import com.angmolin.livechess2fen.chessboard.BoardTracker;
+import com.angmolin.livechess2fen.types.ImageObject;
+import com.angmolin.livechess2fen.types.MatArena;
+import com.angmolin.livechess2fen.types.Pair;
+
+import org.opencv.core.Mat;
+
+import java.util.List;
+
+public class FrameJob {
+
+    public final long sequence;
+    public final Mat frame;
+
+    // Every Mat allocated while the job goes through the stages
+    public final MatArena arena = new MatArena();
+
+    public ImageObject imageObject;
+    public Pair<List<double[]>, List<double[]>> fourPointsCornerPoints;
+    public BoardTracker.State trackingState;
+    public List<Mat> squares;
+    public float[][] cnnResults;
+    public int changedSquares;
+    public double squareHitRatio;
+    public Character[] boardArray;
+    public String fen;
+
+    public long detectTime;
+    public long splitTime;
+    public long classifyTime;
+    public long inferTime;
+
+    public long submitTimestamp;
+    public long finishTimestamp;
+
+    public FrameJob(long sequence, Mat frame, long submitTimestamp) {
+        this.sequence = sequence;
+        this.frame = arena.borrow(frame.rows(), frame.cols(), frame.type());
+        frame.copyTo(this.frame);
+        this.submitTimestamp = submitTimestamp;
+    }
+
+    /*
+     * Milliseconds of a monotonic clock, as SystemClock.uptimeMillis.
+     */
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public long latency() {
+        return finishTimestamp - submitTimestamp;
+    }
+
+    public void release() {
+        arena.release();
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.angmolin.livechess2fen.pipeline;
+
+import com.angmolin.livechess2fen.Fen;
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+import com.angmolin.livechess2fen.types.MatArena;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class FramePipeline {
+
+    private static final String TAG = "FramePipeline";
+    private static final Logger LOGGER = Logger.getLogger(FramePipeline.class.getName());
+
+    public enum DropPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+
+    public interface Listener {
+
+        void onFrameProcessed(FrameJob job);
+
+    }
+
+    private interface Stage {
+
+        void process(FrameJob job) throws Exception;
+
+    }
+
+    private final BoardRecognizer recognizer;
+    private final DropPolicy dropPolicy;
+    private final Listener listener;
+
+    private final BlockingQueue<FrameJob> detectQueue;
+    private final BlockingQueue<FrameJob> splitQueue;
+    private final BlockingQueue<FrameJob> classifyQueue;
+    private final BlockingQueue<FrameJob> inferQueue;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = false;
+
+    private final AtomicLong submittedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong failedFrames = new AtomicLong();
+    private final AtomicLong processedFrames = new AtomicLong();
+
+    public FramePipeline(ChessboardDetector chessboardDetector, ImageClassifier piecesClassifier, Fen.A1Pos a1Pos, int queueCapacity, DropPolicy dropPolicy, Listener listener) {
+        this.recognizer = new BoardRecognizer(chessboardDetector, piecesClassifier, a1Pos);
+        this.dropPolicy = dropPolicy;
+        this.listener = listener;
+
+        detectQueue = new ArrayBlockingQueue<>(queueCapacity);
+        splitQueue = new ArrayBlockingQueue<>(queueCapacity);
+        classifyQueue = new ArrayBlockingQueue<>(queueCapacity);
+        inferQueue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public FramePipeline(ChessboardDetector chessboardDetector, ImageClassifier piecesClassifier, Listener listener) {
+        this(chessboardDetector, piecesClassifier, Fen.A1Pos.BottomLeft, 1, DropPolicy.DROP_OLDEST, listener);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        recognizer.reset();
+
+        running = true;
+
+        workers.add(startStage("Detect", detectQueue, splitQueue, recognizer::detect));
+        workers.add(startStage("Split", splitQueue, classifyQueue, recognizer::split));
+        workers.add(startStage("Classify", classifyQueue, inferQueue, recognizer::classify));
+        workers.add(startStage("Infer", inferQueue, null, this::infer));
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        workers.clear();
+
+        drain(detectQueue);
+        drain(splitQueue);
+        drain(classifyQueue);
+        drain(inferQueue);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /*
+     * Called from the camera thread. The frame is copied so the camera
+     * can reuse its buffer and keep delivering previews while the stages
+     * work on older frames.
+     */
+    public boolean submit(Mat frame) {
+        if (!running) {
+            return false;
+        }
+
+        FrameJob job = new FrameJob(submittedFrames.incrementAndGet(), frame, FrameJob.uptimeMillis());
+
+        boolean queued = handOff(detectQueue, job);
+
+        /* stop() may have drained the queues between the check and the hand off */
+        if (!running) {
+            drain(detectQueue);
+            return false;
+        }
+
+        return queued;
+    }
+
+    public long getSubmittedFrames() {
+        return submittedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getFailedFrames() {
+        return failedFrames.get();
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.get();
+    }
+
+    @SuppressWarnings("try")
+    private Thread startStage(String name, BlockingQueue<FrameJob> input, BlockingQueue<FrameJob> output, Stage stage) {
+        Thread thread = new Thread(() -> {
+            while (running) {
+                FrameJob job;
+
+                try {
+                    job = input.poll(100, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+
+                if (job == null) {
+                    continue;
+                }
+
+                /* Only entered, so the Mats the stage allocates go to the job arena */
+                try (MatArena.Scope scope = job.arena.enter()) {
+                    stage.process(job);
+                }
+                catch (Throwable throwable) {
+                    /* Errors too, e.g. from native code, so the stage keeps taking frames */
+                    LOGGER.log(Level.WARNING, name + " stage failed on frame " + job.sequence, throwable);
+
+                    failedFrames.incrementAndGet();
+                    job.release();
+                    continue;
+                }
+
+                if (output != null) {
+                    handOff(output, job);
+                }
+            }
+        }, TAG + "-" + name);
+
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    private boolean handOff(BlockingQueue<FrameJob> queue, FrameJob job) {
+        if (queue.offer(job)) {
+            return true;
+        }
+
+        switch (dropPolicy) {
+            case DROP_OLDEST:
+                FrameJob stale = queue.poll();
+                if (stale != null) {
+                    drop(stale);
+                }
+
+                if (queue.offer(job)) {
+                    return true;
+                }
+
+                drop(job);
+                return false;
+            case DROP_NEWEST:
+            default:
+                drop(job);
+                return false;
+        }
+    }
+
+    private void drop(FrameJob job) {
+        droppedFrames.incrementAndGet();
+        job.release();
+    }
+
+    private void drain(BlockingQueue<FrameJob> queue) {
+        FrameJob job;
+
+        while ((job = queue.poll()) != null) {
+            job.release();
+        }
+    }
+
+    private void infer(FrameJob job) {
+        recognizer.infer(job);
+
+        processedFrames.incrementAndGet();
+
+        try {
+            listener.onFrameProcessed(job);
+        }
+        catch (Throwable throwable) {
+            LOGGER.log(Level.SEVERE, "Frame listener failed", throwable);
+        }
+        finally {
+            job.release();
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.angmolin.livechess2fen.types;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Keeps buffers given back after use, keyed by their shape, so the next
+ * borrow of the same shape reuses one instead of allocating it.
+ *
+ * Only buffers borrowed from the pool are taken back, at most
+ * maxIdlePerKey of each shape are kept and the rest are destroyed.
+ */
+public abstract class BufferPool<B> {
+
+    // Key of buffers that can't be reused, they are destroyed on recycle
+    protected static final long unpooled = -1;
+
+    private final int maxIdlePerKey;
+
+    private final Map<Long, ArrayDeque<B>> idle = new HashMap<>();
+    private final Set<B> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int idleCount = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    protected BufferPool(int maxIdlePerKey) {
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    protected abstract long key(B buffer);
+
+    protected abstract void destroy(B buffer);
+
+    /*
+     * Idle buffer for the key, or null if one has to be allocated. The
+     * caller registers the new buffer with borrowed.
+     */
+    protected synchronized B take(long key) {
+        ArrayDeque<B> buffers = idle.get(key);
+
+        if (buffers == null || buffers.isEmpty()) {
+            misses++;
+            return null;
+        }
+
+        B buffer = buffers.pop();
+        idleCount--;
+        hits++;
+
+        borrowed.add(buffer);
+
+        return buffer;
+    }
+
+    protected synchronized B borrowed(B buffer) {
+        borrowed.add(buffer);
+
+        return buffer;
+    }
+
+    /*
+     * Returns false, leaving the buffer untouched, if it was not borrowed
+     * from this pool.
+     */
+    public boolean recycle(B buffer) {
+        B destroyed = null;
+
+        synchronized (this) {
+            if (!borrowed.remove(buffer)) {
+                return false;
+            }
+
+            long key = key(buffer);
+            ArrayDeque<B> buffers = idle.get(key);
+
+            if (key != unpooled && buffers == null) {
+                buffers = new ArrayDeque<>();
+                idle.put(key, buffers);
+            }
+
+            if (key != unpooled && buffers.size() < maxIdlePerKey) {
+                buffers.push(buffer);
+                idleCount++;
+            }
+            else {
+                destroyed = buffer;
+            }
+        }
+
+        if (destroyed != null) {
+            destroy(destroyed);
+        }
+
+        return true;
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<B> buffers : idle.values()) {
+            for (B buffer : buffers) {
+                destroy(buffer);
+            }
+        }
+
+        idle.clear();
+        idleCount = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    public synchronized int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.angmolin.livechess2fen.types;
 
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
@@ -10,8 +12,19 @@ public class ComplexMat {
     public final Mat downscaled;
     public final double scale;
 
+    /*
+     * original may be null for layers only analyzed at the downscaled size.
+     */
+    public ComplexMat(Mat original, Mat downscaled, double scale) {
+        this.original = original;
+        this.downscaled = downscaled;
+        this.scale = scale;
+    }
+
     public ComplexMat(Mat mat, int height) {
-        original = mat.clone();
+        original = MatArena.allocate(mat.rows(), mat.cols(), mat.type());
+        mat.copyTo(original);
+
         scale = Math.sqrt(
                 (double) (height * height) /
                         (double) (original.rows() * original.cols())
@@ -21,13 +34,13 @@ public class ComplexMat {
                 original.cols() * scale,
                 original.rows() * scale
         );
-        downscaled = new Mat(downscaledSize, mat.type());
+        downscaled = MatArena.allocate((int) downscaledSize.height, (int) downscaledSize.width, mat.type());
 
-        Imgproc.resize(original, downscaled, downscaledSize, 0, 0);
+        Imgproc.resize(original, downscaled, downscaledSize, 0, 0, Imgproc.INTER_LINEAR);
     }
 
     public ComplexMat(Mat mat) {
-        this(mat, 500);
+        this(mat, ChessboardDetector.downscaledLength);
     }
 
 }
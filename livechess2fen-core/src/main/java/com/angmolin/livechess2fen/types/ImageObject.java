@@ -0,0 +1,187 @@
+package com.angmolin.livechess2fen.types;
+
+
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImageObject {
+
+    private final List<ComplexMat> items;
+    private final List<List<double[]>> points;
+    private Pair<List<double[]>, List<double[]>> corners;
+
+    // From the first image to the last layer, null while there is one layer
+    private Mat homography;
+
+    public ImageObject(Mat image) {
+        items = new ArrayList<>();
+        points = new ArrayList<>();
+
+        if (image != null) {
+            items.add(new ComplexMat(image));
+        }
+    }
+
+    public ComplexMat first() {
+        if (items.size() > 0) {
+            return items.get(0);
+        }
+
+        return null;
+    }
+
+    public ComplexMat last() {
+        if (items.size() > 0) {
+            return items.get(items.size() - 1);
+        }
+
+        return null;
+    }
+
+    public List<double[]> lastFourPoints() {
+        if (points.size() > 0) {
+            return points.get(points.size() - 1);
+        }
+
+        return null;
+    }
+
+    public void addPoints(List<double[]> fourPoints) {
+        points.add(fourPoints);
+    }
+
+    public List<List<double[]>> getPoints() {
+        return points;
+    }
+
+    /*
+     * From the first image to the full size board of the last layer, null
+     * while there is one layer.
+     */
+    public Mat getHomography() {
+        return homography;
+    }
+
+    public Pair<List<double[]>, List<double[]>> getCorners() {
+        return corners;
+    }
+
+    public void setCorners(Pair<List<double[]>, List<double[]>> corners) {
+        this.corners = corners;
+    }
+
+    public void crop(List<double[]> points) {
+        scalePoints(points, last().scale);
+        warp(points);
+    }
+
+    /*
+     * Layers after the first one are warped straight from the first image
+     * with the composed homography, at the downscaled size only. The full
+     * size board is warped by warpOriginal.
+     */
+    public void warp(List<double[]> points) {
+        Mat layerTransform = MatArena.track(perspectiveTransform(points));
+
+        if (homography == null) {
+            homography = layerTransform;
+        }
+        else {
+            Core.gemm(layerTransform, homography, 1.0, MatArena.track(new Mat()), 0.0, homography);
+        }
+
+        double scale = ChessboardDetector.downscaledLength / (double) ChessboardDetector.boardLength;
+
+        Mat downscaledTransform = homography.clone();
+        Core.multiply(downscaledTransform.rowRange(0, 2), new Scalar(scale), downscaledTransform.rowRange(0, 2));
+
+        Size downscaledSize = new Size(ChessboardDetector.downscaledLength, ChessboardDetector.downscaledLength);
+        Mat downscaled = MatArena.allocate(ChessboardDetector.downscaledLength, ChessboardDetector.downscaledLength, first().original.type());
+        Imgproc.warpPerspective(first().original, downscaled, downscaledTransform, downscaledSize);
+        downscaledTransform.release();
+
+        addPoints(points);
+        items.add(new ComplexMat(null, downscaled, scale));
+    }
+
+    /*
+     * Warps the full size board of the last layer, once.
+     */
+    public void warpOriginal() {
+        ComplexMat last = last();
+
+        if (last == null || last.original != null) {
+            return;
+        }
+
+        Size warpedSize = new Size(ChessboardDetector.boardLength, ChessboardDetector.boardLength);
+        Mat original = MatArena.allocate(ChessboardDetector.boardLength, ChessboardDetector.boardLength, first().original.type());
+        Imgproc.warpPerspective(first().original, original, homography, warpedSize);
+
+        items.set(items.size() - 1, new ComplexMat(original, last.downscaled, last.scale));
+    }
+
+    public static void scalePoints(List<double[]> points, double scale) {
+        for (double[] point : points) {
+            for (int i = 0; i < point.length; i++) {
+                point[i] /= scale;
+            }
+        }
+    }
+
+    /*
+     * Homography from the four points to the corners of the warped board.
+     */
+    public static Mat perspectiveTransform(List<double[]> points) {
+        Mat fromPerspective = new Mat(4, 1, CvType.CV_32FC2);
+        Mat toPerspective = new Mat(4, 1, CvType.CV_32FC2);
+        fromPerspective.put(0, 0,
+                points.get(0)[0],  points.get(0)[1],
+                points.get(1)[0],  points.get(1)[1],
+                points.get(2)[0],  points.get(2)[1],
+                points.get(3)[0],  points.get(3)[1]
+        );
+        toPerspective.put(0, 0,
+                0.0,                            0.0,
+                ChessboardDetector.boardLength,                            0.0,
+                ChessboardDetector.boardLength, ChessboardDetector.boardLength,
+                0.0, ChessboardDetector.boardLength
+        );
+
+        Mat perspectiveTransform = Imgproc.getPerspectiveTransform(fromPerspective, toPerspective);
+
+        fromPerspective.release();
+        toPerspective.release();
+
+        return perspectiveTransform;
+    }
+
+    public static Mat matTransform(Mat mat, List<double[]> points) {
+        Size warpedSize = new Size(ChessboardDetector.boardLength, ChessboardDetector.boardLength);
+
+        Mat warpedMat;
+
+        if (points.size() > 0) {
+            Mat perspectiveTransform = perspectiveTransform(points);
+
+            warpedMat = MatArena.allocate(ChessboardDetector.boardLength, ChessboardDetector.boardLength, CvType.CV_8UC4);
+            Imgproc.warpPerspective(mat, warpedMat, perspectiveTransform, warpedSize);
+            perspectiveTransform.release();
+        }
+        else {
+            warpedMat = mat;
+        }
+
+        return warpedMat;
+    }
+
+}
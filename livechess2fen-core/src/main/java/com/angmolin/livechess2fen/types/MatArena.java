@@ -0,0 +1,179 @@
+package com.angmolin.livechess2fen.types;
+
+import org.opencv.core.Mat;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Owns the native Mats allocated while processing a frame, so they are
+ * released together when the frame is done instead of waiting for the
+ * finalizers.
+ *
+ * Code running inside enter() adds its Mats with MatArena.track, out of
+ * any arena they are left to the caller. Mats from MatArena.allocate are
+ * borrowed from MatPool.shared and go back to it instead of being
+ * released.
+ */
+public class MatArena implements AutoCloseable {
+
+    private static final ThreadLocal<MatArena> current = new ThreadLocal<>();
+
+    // Arenas not released yet, for the debug counters
+    private static final Set<MatArena> openArenas = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger liveMats = new AtomicInteger();
+
+    private final Set<Mat> mats = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Mat> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean released = false;
+
+    public MatArena() {
+        openArenas.add(this);
+    }
+
+    public synchronized <T extends Mat> T add(T mat) {
+        if (released) {
+            throw new IllegalStateException("Arena already released");
+        }
+
+        if (mats.add(mat)) {
+            liveMats.incrementAndGet();
+        }
+
+        return mat;
+    }
+
+    public synchronized Mat borrow(int rows, int cols, int type) {
+        Mat mat = add(MatPool.shared.borrow(rows, cols, type));
+        pooled.add(mat);
+
+        return mat;
+    }
+
+    /*
+     * Adds the mat to the arena of the calling thread, if there is one.
+     */
+    public static <T extends Mat> T track(T mat) {
+        MatArena arena = current.get();
+
+        return arena != null ? arena.add(mat) : mat;
+    }
+
+    /*
+     * Mat borrowed by the arena of the calling thread, or a new one out of
+     * any arena. Its contents are undefined.
+     */
+    public static Mat allocate(int rows, int cols, int type) {
+        MatArena arena = current.get();
+
+        return arena != null ? arena.borrow(rows, cols, type) : new Mat(rows, cols, type);
+    }
+
+    public static MatArena current() {
+        return current.get();
+    }
+
+    /*
+     * Makes this arena the one of the calling thread until the scope is
+     * closed, then the previous one is restored.
+     */
+    public Scope enter() {
+        MatArena previous = current.get();
+        current.set(this);
+
+        return () -> {
+            if (previous != null) {
+                current.set(previous);
+            }
+            else {
+                current.remove();
+            }
+        };
+    }
+
+    public synchronized int size() {
+        return mats.size();
+    }
+
+    public synchronized long bytes() {
+        long bytes = 0;
+
+        for (Mat mat : mats) {
+            bytes += mat.total() * mat.elemSize();
+        }
+
+        return bytes;
+    }
+
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+
+        for (Mat mat : mats) {
+            if (!pooled.contains(mat) || !MatPool.shared.recycle(mat)) {
+                mat.release();
+            }
+        }
+
+        liveMats.addAndGet(-mats.size());
+        mats.clear();
+        pooled.clear();
+
+        released = true;
+        openArenas.remove(this);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    /*
+     * Mats held by arenas not released yet.
+     */
+    public static int liveMats() {
+        return liveMats.get();
+    }
+
+    public static long liveBytes() {
+        long bytes = 0;
+
+        for (MatArena arena : openArenas) {
+            bytes += arena.bytes();
+        }
+
+        return bytes;
+    }
+
+    public static int openArenas() {
+        return openArenas.size();
+    }
+
+    /*
+     * Fails when some arena was not released, meant for tests.
+     */
+    public static void assertNoLeaks() {
+        int mats = liveMats();
+
+        if (mats > 0 || !openArenas.isEmpty()) {
+            throw new IllegalStateException(String.format(
+                    "%d Mats (%d bytes) alive in %d arenas", mats, liveBytes(), openArenas()));
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.angmolin.livechess2fen.types;
+
+import org.opencv.core.Mat;
+
+/*
+ * Mats keyed by rows, cols and type. Borrowed Mats keep the contents of
+ * their previous use, they are meant as outputs that get overwritten.
+ */
+public class MatPool extends BufferPool<Mat> {
+
+    public static final MatPool shared = new MatPool(4);
+
+    public MatPool(int maxIdlePerKey) {
+        super(maxIdlePerKey);
+    }
+
+    private static long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | type;
+    }
+
+    @Override
+    protected long key(Mat mat) {
+        if (mat.empty() || mat.isSubmatrix() || !mat.isContinuous()) {
+            return unpooled;
+        }
+
+        return key(mat.rows(), mat.cols(), mat.type());
+    }
+
+    @Override
+    protected void destroy(Mat mat) {
+        mat.release();
+    }
+
+    public Mat borrow(int rows, int cols, int type) {
+        Mat mat = take(key(rows, cols, type));
+
+        return mat != null ? mat : borrowed(new Mat(rows, cols, type));
+    }
+
+}
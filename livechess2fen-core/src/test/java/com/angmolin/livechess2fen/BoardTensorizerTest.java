@@ -0,0 +1,76 @@
+package com.angmolin.livechess2fen;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BoardTensorizerTest {
+
+    private static double[] apply(double[] m, double x, double y) {
+        double w = m[6] * x + m[7] * y + m[8];
+
+        return new double[] {
+                (m[0] * x + m[1] * y + m[2]) / w,
+                (m[3] * x + m[4] * y + m[5]) / w
+        };
+    }
+
+    private static double[] randomHomography(Random random) {
+        return new double[] {
+                1 + random.nextGaussian() * 0.2, random.nextGaussian() * 0.2, random.nextDouble() * 300,
+                random.nextGaussian() * 0.2, 1 + random.nextGaussian() * 0.2, random.nextDouble() * 300,
+                random.nextGaussian() * 1e-4, random.nextGaussian() * 1e-4, 1
+        };
+    }
+
+    @Test
+    public void inverseUndoesTheHomography() {
+        Random random = new Random(23);
+
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double[] homography = randomHomography(random);
+            double[] inverse = BoardTensorizer.invert(homography);
+
+            double x = random.nextDouble() * 1200;
+            double y = random.nextDouble() * 1200;
+            double[] back = apply(inverse, apply(homography, x, y)[0], apply(homography, x, y)[1]);
+
+            assertEquals(x, back[0], 1e-6);
+            assertEquals(y, back[1], 1e-6);
+        }
+    }
+
+    /*
+     * Input pixel (u, v) has to sample the board where resizing the crop of
+     * the warped board would, as the classifier did before.
+     */
+    @Test
+    public void cropPixelsSampleTheBoardAsTheResize() {
+        Random random = new Random(29);
+        double[] out = new double[9];
+
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double[] homography = randomHomography(random);
+            double[] inverse = BoardTensorizer.invert(homography);
+
+            double x = random.nextInt(8) * 150;
+            double y = random.nextInt(8) * 150;
+            double h = 150 * (1 + random.nextDouble());
+            int size = 224;
+
+            BoardTensorizer.cropTransform(inverse, x, y, 150, h, size, size, out);
+
+            int u = random.nextInt(size);
+            int v = random.nextInt(size);
+
+            double[] expected = apply(inverse, x + (u + 0.5) * 150 / size - 0.5, y + (v + 0.5) * h / size - 0.5);
+            double[] actual = apply(out, u, v);
+
+            assertEquals(expected[0], actual[0], 1e-6);
+            assertEquals(expected[1], actual[1], 1e-6);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.angmolin.livechess2fen;
+
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SquareChangeDetectorTest {
+
+    private static final int squareLength = 40;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    /*
+     * Counts the squares it is asked to classify.
+     */
+    private static class CountingClassifier implements ImageClassifier {
+
+        int classified = 0;
+
+        @Override
+        public Size getInputSize() {
+            return new Size(squareLength, squareLength);
+        }
+
+        @Override
+        public int classifyAndGetMax(Mat image) {
+            classified++;
+            return 0;
+        }
+
+        @Override
+        public float[] classifyAndGetResult(Mat image) {
+            classified++;
+            return new float[] { 1 };
+        }
+
+        @Override
+        public float[] classifyBatch(List<Mat> images) {
+            classified += images.size();
+            return new float[images.size()];
+        }
+
+        @Override
+        public int[] classifyBatchAndGetMax(List<Mat> images) {
+            classified += images.size();
+            return new int[images.size()];
+        }
+
+    }
+
+    private static List<Mat> squares(Mat board) {
+        List<Mat> squares = new ArrayList<>();
+
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                squares.add(board.submat(new Rect(col * squareLength, row * squareLength, squareLength, squareLength)));
+            }
+        }
+
+        return squares;
+    }
+
+    @Test
+    public void unchangedBoardReusesTheResults() {
+        SquareChangeDetector detector = new SquareChangeDetector();
+        CountingClassifier classifier = new CountingClassifier();
+        Mat board = new Mat(8 * squareLength, 8 * squareLength, CvType.CV_8U, new Scalar(100));
+
+        detector.classify(classifier, board, squares(board));
+        assertEquals(64, classifier.classified);
+
+        for (int frame = 0; frame < 5; frame++) {
+            detector.classify(classifier, board, squares(board));
+        }
+
+        assertEquals(64, classifier.classified);
+        assertEquals(0, detector.getLastChangedSquares());
+
+        detector.reset();
+        detector.classify(classifier, board, squares(board));
+        assertEquals(128, classifier.classified);
+    }
+
+    @Test
+    public void slowDriftIsReclassified() {
+        SquareChangeDetector detector = new SquareChangeDetector();
+        CountingClassifier classifier = new CountingClassifier();
+
+        /* 2 gray levels per frame, under the threshold of 6 between frames */
+        int level = 100;
+        int reclassifiedAt = -1;
+
+        for (int frame = 0; frame < 10; frame++, level += 2) {
+            Mat board = new Mat(8 * squareLength, 8 * squareLength, CvType.CV_8U, new Scalar(level));
+            detector.classify(classifier, board, squares(board));
+
+            if (frame > 0 && detector.getLastChangedSquares() > 0 && reclassifiedAt < 0) {
+                reclassifiedAt = frame;
+                assertEquals(64, detector.getLastChangedSquares());
+            }
+        }
+
+        /* 8 gray levels away from the reference on the fourth frame */
+        assertEquals(4, reclassifiedAt);
+        assertEquals(64 * 3, classifier.classified);
+    }
+
+    @Test
+    public void onlyReclassifiedSquaresTakeANewReference() {
+        SquareChangeDetector detector = new SquareChangeDetector();
+        CountingClassifier classifier = new CountingClassifier();
+        Mat board = new Mat(8 * squareLength, 8 * squareLength, CvType.CV_8U, new Scalar(100));
+
+        detector.classify(classifier, board, squares(board));
+
+        /* A piece slides slowly into the first square */
+        Mat first = board.submat(new Rect(0, 0, squareLength, squareLength));
+        int changes = 0;
+
+        for (int level = 104; level <= 120; level += 4) {
+            first.setTo(new Scalar(level));
+            detector.classify(classifier, board, squares(board));
+
+            changes += detector.getLastChangedSquares();
+        }
+
+        /* 108 is reclassified against 100 and 116 against 108, 104, 112 and 120 are not */
+        assertEquals(2, changes);
+        assertEquals(64 + 2, classifier.classified);
+    }
+
+}
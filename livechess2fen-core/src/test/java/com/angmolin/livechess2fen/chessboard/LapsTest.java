@@ -0,0 +1,42 @@
+package com.angmolin.livechess2fen.chessboard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LapsTest {
+
+    @Test
+    public void spreadOrderVisitsEveryCornerOnce() {
+        for (int side = 1; side <= 9; side++) {
+            int[] order = Laps.spreadOrder(side);
+            boolean[] visited = new boolean[side * side];
+
+            assertEquals(side * side, order.length);
+
+            for (int cell : order) {
+                assertFalse("Corner " + cell + " visited twice", visited[cell]);
+                visited[cell] = true;
+            }
+        }
+    }
+
+    @Test
+    public void spreadOrderPrefixCoversTheBoard() {
+        int[] order = Laps.spreadOrder(7);
+
+        // The first nine corners fall in every third of the rows and columns
+        boolean[] rowBands = new boolean[3];
+        boolean[] colBands = new boolean[3];
+        for (int i = 0; i < 9; i++) {
+            rowBands[order[i] / 7 * 3 / 7] = true;
+            colBands[order[i] % 7 * 3 / 7] = true;
+        }
+
+        for (int band = 0; band < 3; band++) {
+            assertTrue("Row band " + band, rowBands[band]);
+            assertTrue("Column band " + band, colBands[band]);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOPoint;
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOSegment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BentleyOttmannTest {
+
+    /*
+     * Segments as received by Laps.laps: mostly long, almost horizontal or
+     * almost vertical lines over a 500x500 image plus some random ones.
+     */
+    private static List<double[]> randomSegments(Random random, int n, boolean verticals) {
+        List<double[]> segments = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            double kind = random.nextDouble();
+
+            if (kind < 0.4) {
+                double y = random.nextDouble() * 500;
+                segments.add(new double[] { random.nextDouble() * 50, y, 450 + random.nextDouble() * 50, y + random.nextGaussian() * 20 });
+            }
+            else if (kind < 0.8) {
+                double x = random.nextDouble() * 500;
+                double shift = verticals && random.nextDouble() < 0.2 ? 0 : random.nextGaussian() * 20;
+                segments.add(new double[] { x + shift, random.nextDouble() * 50, x, 450 + random.nextDouble() * 50 });
+            }
+            else {
+                segments.add(new double[] { random.nextDouble() * 500, random.nextDouble() * 500, random.nextDouble() * 500, random.nextDouble() * 500 });
+            }
+        }
+
+        return segments;
+    }
+
+    private static List<BOSegment> toSegments(List<double[]> rawSegments) {
+        List<BOSegment> segments = new ArrayList<>();
+        for (double[] rawSegment : rawSegments) {
+            segments.add(BOSegment.fromRawData(rawSegment));
+        }
+
+        return segments;
+    }
+
+    private static List<BOPoint> sweep(List<double[]> rawSegments) {
+        BentleyOttmann bo = new BentleyOttmann(toSegments(rawSegments));
+        bo.findIntersections();
+
+        return bo.getIntersections();
+    }
+
+    private static List<BOPoint> bruteForce(List<double[]> rawSegments) {
+        List<BOSegment> segments = toSegments(rawSegments);
+        List<BOPoint> points = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            for (int j = i + 1; j < segments.size(); j++) {
+                BOPoint a1 = segments.get(i).first();
+                BOPoint a2 = segments.get(i).second();
+                BOPoint b1 = segments.get(j).first();
+                BOPoint b2 = segments.get(j).second();
+
+                double r = (a2.x - a1.x) * (b2.y - b1.y) - (a2.y - a1.y) * (b2.x - b1.x);
+
+                if (r != 0) {
+                    double t = ((b1.x - a1.x) * (b2.y - b1.y) - (b1.y - a1.y) * (b2.x - b1.x)) / r;
+                    double u = ((b1.x - a1.x) * (a2.y - a1.y) - (b1.y - a1.y) * (a2.x - a1.x)) / r;
+
+                    if (t >= 0 && t <= 1 && u >= 0 && u <= 1) {
+                        points.add(new BOPoint(a1.x + t * (a2.x - a1.x), a1.y + t * (a2.y - a1.y)));
+                    }
+                }
+            }
+        }
+
+        return points;
+    }
+
+    private static void assertSamePoints(List<BOPoint> expected, List<BOPoint> actual) {
+        assertEquals("Number of intersections", expected.size(), actual.size());
+
+        boolean[] matched = new boolean[actual.size()];
+        for (BOPoint p : expected) {
+            boolean found = false;
+
+            for (int i = 0; i < actual.size() && !found; i++) {
+                if (!matched[i] && p.distanceTo(actual.get(i)) < 1e-6) {
+                    matched[i] = true;
+                    found = true;
+                }
+            }
+
+            assertTrue("Missing intersection " + p.x + ", " + p.y, found);
+        }
+    }
+
+    @Test
+    public void sameIntersectionsAsBruteForce() {
+        Random random = new Random(5);
+
+        for (int iteration = 0; iteration < 300; iteration++) {
+            List<double[]> segments = randomSegments(random, 20 + random.nextInt(181), false);
+
+            assertSamePoints(bruteForce(segments), sweep(segments));
+        }
+    }
+
+    @Test
+    public void verticalSegments() {
+        Random random = new Random(11);
+
+        for (int iteration = 0; iteration < 100; iteration++) {
+            List<double[]> segments = randomSegments(random, 20 + random.nextInt(181), true);
+
+            assertSamePoints(bruteForce(segments), sweep(segments));
+        }
+    }
+
+}
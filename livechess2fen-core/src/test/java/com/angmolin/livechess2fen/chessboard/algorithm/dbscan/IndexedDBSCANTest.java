@@ -0,0 +1,87 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.dbscan;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.exceptions.DBException;
+import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.metrics.DBMetricEuclidean;
+import com.angmolin.livechess2fen.chessboard.algorithm.dbscan.types.DBPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedDBSCANTest {
+
+    /*
+     * Lattice-like points as received by Cps.cps: a jittered 7x7 grid plus
+     * random outliers and a few exact duplicates, normalized to integers
+     * unless fractional is set.
+     */
+    private static List<DBPoint> randomPoints(Random random, int n, boolean fractional) {
+        List<DBPoint> points = new ArrayList<>();
+
+        double spacing = 20 + random.nextDouble() * 30;
+        double originX = random.nextDouble() * 200;
+        double originY = random.nextDouble() * 200;
+
+        while (points.size() < n) {
+            DBPoint point;
+
+            if (random.nextDouble() < 0.7) {
+                point = new DBPoint(
+                        originX + random.nextInt(7) * spacing + random.nextGaussian() * 2,
+                        originY + random.nextInt(7) * spacing + random.nextGaussian() * 2
+                );
+            }
+            else if (random.nextDouble() < 0.9 || points.isEmpty()) {
+                point = new DBPoint(random.nextDouble() * 500, random.nextDouble() * 500);
+            }
+            else {
+                DBPoint duplicate = points.get(random.nextInt(points.size()));
+                point = new DBPoint(duplicate.x, duplicate.y);
+            }
+
+            if (!fractional) {
+                point.normalize();
+            }
+            points.add(point);
+        }
+
+        return points;
+    }
+
+    private static void assertSameClusters(Random random, boolean fractional) throws DBException {
+        for (int iteration = 0; iteration < 300; iteration++) {
+            int n = 50 + random.nextInt(151);
+            int minPoints = 2 + random.nextInt(5);
+            double epsilon = 5 + random.nextDouble() * 80;
+
+            List<DBPoint> points = randomPoints(random, n, fractional);
+
+            List<List<DBPoint>> expected = new DBSCAN<>(points, minPoints, epsilon, new DBMetricEuclidean()).performClustering();
+            List<List<DBPoint>> actual = new IndexedDBSCAN(points, minPoints, epsilon).performClustering();
+
+            assertEquals("Number of clusters", expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("Cluster size", expected.get(i).size(), actual.get(i).size());
+
+                for (int j = 0; j < expected.get(i).size(); j++) {
+                    assertTrue("Cluster member", expected.get(i).get(j) == actual.get(i).get(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameClustersAsDBSCAN() throws DBException {
+        assertSameClusters(new Random(42), false);
+    }
+
+    @Test
+    public void sameClustersWithFractionalCoordinates() throws DBException {
+        assertSameClusters(new Random(43), true);
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.lighti.clipper.Clipper;
+import de.lighti.clipper.ClipperOffset;
+import de.lighti.clipper.Path;
+import de.lighti.clipper.Paths;
+import de.lighti.clipper.Point.LongPoint;
+
+import static org.junit.Assert.*;
+
+public class ConvexPolygonTest {
+
+    private static Path clipperOffset(long[] xs, long[] ys, double delta) {
+        Path path = new Path();
+        for (int i = 0; i < xs.length; i++) {
+            path.add(new LongPoint(xs[i], ys[i]));
+        }
+
+        ClipperOffset clipperOffset = new ClipperOffset();
+        clipperOffset.addPath(path, Clipper.JoinType.MITER, Clipper.EndType.CLOSED_POLYGON);
+
+        Paths paths = new Paths();
+        clipperOffset.execute(paths, delta);
+
+        return paths.get(0);
+    }
+
+    /*
+     * Random convex quad around the image centre, in either orientation,
+     * from four points at increasing angles.
+     */
+    private static boolean randomConvexQuad(Random random, long[] xs, long[] ys) {
+        double[] angles = new double[4];
+        for (int i = 0; i < 4; i++) {
+            angles[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        Arrays.sort(angles);
+
+        boolean clockwise = random.nextBoolean();
+        for (int i = 0; i < 4; i++) {
+            double angle = angles[clockwise ? 3 - i : i];
+            double radius = 50 + random.nextDouble() * 200;
+
+            xs[i] = (long) (250 + radius * Math.cos(angle));
+            ys[i] = (long) (250 + radius * Math.sin(angle));
+        }
+
+        long sign = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = (i + 1) % 4;
+            int c = (i + 2) % 4;
+
+            long cross = (xs[b] - xs[i]) * (ys[c] - ys[b]) - (ys[b] - ys[i]) * (xs[c] - xs[b]);
+            if (cross == 0 || (sign != 0 && Long.signum(cross) != sign)) {
+                return false;
+            }
+
+            sign = Long.signum(cross);
+        }
+
+        return true;
+    }
+
+    @Test
+    public void sameOffsetAsClipper() {
+        Random random = new Random(42);
+
+        int quads = 0;
+        int fallbacks = 0;
+
+        while (quads < 2000) {
+            long[] xs = new long[4];
+            long[] ys = new long[4];
+
+            if (!randomConvexQuad(random, xs, ys)) {
+                continue;
+            }
+            quads++;
+
+            double delta = random.nextBoolean() ? 60 : 3 + random.nextDouble() * 40;
+
+            ConvexPolygon polygon = ConvexPolygon.offsetQuad(xs, ys, delta);
+            if (polygon == null) {
+                fallbacks++;
+                continue;
+            }
+
+            Path path = clipperOffset(xs, ys, delta);
+
+            assertEquals("Number of vertices", path.size(), polygon.size());
+            for (int i = 0; i < path.size(); i++) {
+                assertEquals("Vertex x", path.get(i).getX(), polygon.getX(i));
+                assertEquals("Vertex y", path.get(i).getY(), polygon.getY(i));
+            }
+
+            for (long x = -100; x < 600; x += 3) {
+                for (long y = -100; y < 600; y += 3) {
+                    assertEquals("Containment", path.isPointInPolygon(new LongPoint(x, y)) != 0, polygon.contains(x, y));
+                }
+            }
+
+            // Points exactly on the boundary count as inside
+            for (int i = 0; i < path.size(); i++) {
+                assertTrue("Vertex inside", polygon.contains(path.get(i).getX(), path.get(i).getY()));
+            }
+
+            assertEquals("Area", Math.abs(path.area()), polygon.area(), 0);
+        }
+
+        assertTrue("Too many fallbacks to Clipper: " + fallbacks, fallbacks < quads / 100);
+    }
+
+    @Test
+    public void notStrictlyConvexFallsBack() {
+        long[] collinear = new long[] { 0, 50, 100, 100 };
+        long[] ys = new long[] { 0, 0, 0, 100 };
+        assertNull(ConvexPolygon.offsetQuad(collinear, ys, 10));
+
+        long[] concaveXs = new long[] { 0, 100, 30, 0 };
+        long[] concaveYs = new long[] { 0, 0, 30, 100 };
+        assertNull(ConvexPolygon.offsetQuad(concaveXs, concaveYs, 10));
+
+        long[] duplicatedXs = new long[] { 0, 100, 100, 100 };
+        long[] duplicatedYs = new long[] { 0, 0, 100, 100 };
+        assertNull(ConvexPolygon.offsetQuad(duplicatedXs, duplicatedYs, 10));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.BentleyOttmann;
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOPoint;
+import com.angmolin.livechess2fen.chessboard.algorithm.bentleyottmann.types.BOSegment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FamilyIntersectorTest {
+
+    private static List<double[]> randomFamily(Random random, int n, boolean vertical) {
+        List<double[]> segments = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            double position = random.nextDouble() * 500;
+            double start = random.nextDouble() * 150;
+            double end = 350 + random.nextDouble() * 150;
+            double tilt = random.nextGaussian() * 20;
+
+            if (vertical) {
+                segments.add(new double[] { position + tilt, start, position, end });
+            }
+            else {
+                segments.add(new double[] { end, position, start, position + tilt });
+            }
+        }
+
+        return segments;
+    }
+
+    private static List<BOPoint> sweep(List<double[]> horizontal, List<double[]> vertical) {
+        List<BOSegment> segments = new ArrayList<>();
+        for (double[] segment : horizontal) {
+            segments.add(BOSegment.fromRawData(segment));
+        }
+        for (double[] segment : vertical) {
+            segments.add(BOSegment.fromRawData(segment));
+        }
+
+        BentleyOttmann bo = new BentleyOttmann(segments);
+        bo.findIntersections();
+
+        return bo.getIntersections();
+    }
+
+    @Test
+    public void sameCrossingsAsSweep() {
+        Random random = new Random(3);
+        FamilyIntersector intersector = new FamilyIntersector();
+
+        for (int iteration = 0; iteration < 200; iteration++) {
+            List<double[]> horizontal = randomFamily(random, 5 + random.nextInt(40), false);
+            List<double[]> vertical = randomFamily(random, 5 + random.nextInt(40), true);
+
+            int count = intersector.intersect(horizontal, vertical);
+            double[] points = intersector.getPoints();
+
+            /*
+             * The sweep also returns the crossings inside each family, every
+             * crossing between both families must be among them.
+             */
+            List<BOPoint> expected = sweep(horizontal, vertical);
+            boolean[] matched = new boolean[expected.size()];
+
+            for (int i = 0; i < count; i++) {
+                BOPoint p = new BOPoint(points[2 * i], points[2 * i + 1]);
+                boolean found = false;
+
+                for (int j = 0; j < expected.size() && !found; j++) {
+                    if (!matched[j] && p.distanceTo(expected.get(j)) < 1e-6) {
+                        matched[j] = true;
+                        found = true;
+                    }
+                }
+
+                assertTrue("Unexpected intersection " + p.x + ", " + p.y, found);
+            }
+
+            int sameFamily = sweep(horizontal, new ArrayList<>()).size() + sweep(new ArrayList<>(), vertical).size();
+
+            assertEquals("Number of intersections", expected.size() - sameFamily, count);
+        }
+    }
+
+}
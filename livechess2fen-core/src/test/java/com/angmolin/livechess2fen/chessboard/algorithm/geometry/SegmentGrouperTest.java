@@ -0,0 +1,218 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentGrouperTest {
+
+    /*
+     * Grouping as done by Slid before, with hash maps keyed by identity hash
+     * and every pair of the family compared.
+     */
+    private static class HashGrouper {
+
+        private HashMap<Integer, List<Integer>> hashGroup = new HashMap<>();
+        private HashMap<Integer, Integer> hashX = new HashMap<>();
+
+        private Integer findInHashMap(int k) {
+            Integer v = hashX.get(k);
+
+            if (v == null) {
+                hashX.put(k, k);
+                return k;
+            }
+            else if (v == k) {
+                return k;
+            }
+            else {
+                v = findInHashMap(v);
+                hashX.put(k, v);
+                return v;
+            }
+        }
+
+        private void unionHashGroup(int a, int b) {
+            Integer ia = findInHashMap(a);
+            Integer ib = findInHashMap(b);
+
+            hashX.put(ia, ib);
+            hashGroup.get(ib).addAll(hashGroup.get(ia));
+        }
+
+        private void joinGroups(List<double[]> segments) {
+            int n = segments.size();
+
+            for (int i = 0; i < n; i++) {
+                double[] l1 = segments.get(i);
+                int h1 = l1.hashCode();
+
+                if (hashX.get(h1) != h1) {
+                    continue;
+                }
+
+                for (int j = i + 1; j < n; j++) {
+                    double[] l2 = segments.get(j);
+                    int h2 = l2.hashCode();
+
+                    if (hashX.get(h2) != h2) {
+                        continue;
+                    }
+
+                    if (SegmentGrouper.similarSegments(l1, l2)) {
+                        unionHashGroup(h1, h2);
+                    }
+                }
+            }
+        }
+
+        List<int[]> group(List<double[]> segments, boolean[] vertical) {
+            Map<Integer, Integer> index = new HashMap<>();
+            List<double[]> verticalSegments = new LinkedList<>();
+            List<double[]> horizontalSegments = new LinkedList<>();
+
+            for (int i = 0; i < segments.size(); i++) {
+                int hash = segments.get(i).hashCode();
+
+                List<Integer> group = new LinkedList<>();
+                group.add(hash);
+
+                hashGroup.put(hash, group);
+                hashX.put(hash, hash);
+                index.put(hash, i);
+
+                (vertical[i] ? verticalSegments : horizontalSegments).add(segments.get(i));
+            }
+
+            joinGroups(verticalSegments);
+            joinGroups(horizontalSegments);
+
+            List<int[]> groups = new ArrayList<>();
+            for (Map.Entry<Integer, List<Integer>> group : hashGroup.entrySet()) {
+                if (!hashX.get(group.getKey()).equals(group.getKey())) {
+                    continue;
+                }
+
+                int[] members = new int[group.getValue().size()];
+                int k = 0;
+                for (Integer hash : group.getValue()) {
+                    members[k++] = index.get(hash);
+                }
+
+                groups.add(members);
+            }
+
+            return groups;
+        }
+
+    }
+
+    /*
+     * Noisy lines of a chessboard grid as found by HoughLinesP, several
+     * segments for most lines, plus some random ones.
+     */
+    private static List<double[]> randomSegments(Random random, int n) {
+        List<double[]> segments = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            double kind = random.nextDouble();
+            double line = 50 + 50 * random.nextInt(9) + random.nextGaussian() * 3;
+            double start = random.nextDouble() * 250;
+            double end = start + 50 + random.nextDouble() * 250;
+            double tilt = random.nextGaussian() * 4;
+
+            if (kind < 0.45) {
+                segments.add(new double[] { line, start, line + tilt, end });
+            }
+            else if (kind < 0.9) {
+                segments.add(new double[] { end, line, start, line + tilt });
+            }
+            else {
+                segments.add(new double[] { random.nextDouble() * 500, random.nextDouble() * 500, random.nextDouble() * 500, random.nextDouble() * 500 });
+            }
+        }
+
+        // Repeated segments, as found by different CLAHE settings
+        for (int i = 0; i < n / 10; i++) {
+            segments.add(segments.get(random.nextInt(n)).clone());
+        }
+
+        return segments;
+    }
+
+    private static boolean[] families(List<double[]> segments) {
+        boolean[] vertical = new boolean[segments.size()];
+
+        for (int i = 0; i < vertical.length; i++) {
+            double[] segment = segments.get(i);
+            vertical[i] = Math.abs(segment[0] - segment[2]) < Math.abs(segment[1] - segment[3]);
+        }
+
+        return vertical;
+    }
+
+    private static void assertSameGroups(List<int[]> expected, List<int[]> actual) {
+        assertEquals("Number of groups", expected.size(), actual.size());
+
+        // Groups are identified by their first member
+        Map<Integer, int[]> byFirst = new HashMap<>();
+        for (int[] group : actual) {
+            byFirst.put(group[0], group);
+        }
+
+        for (int[] group : expected) {
+            int[] other = byFirst.get(group[0]);
+
+            assertNotNull("Missing group of " + group[0], other);
+            assertEquals("Size of the group of " + group[0], group.length, other.length);
+
+            for (int k = 0; k < group.length; k++) {
+                assertEquals("Member " + k + " of the group of " + group[0], group[k], other[k]);
+            }
+        }
+    }
+
+    @Test
+    public void sameGroupsAsPairwise() {
+        Random random = new Random(13);
+        SegmentGrouper grouper = new SegmentGrouper();
+
+        for (int iteration = 0; iteration < 200; iteration++) {
+            List<double[]> segments = randomSegments(random, 20 + random.nextInt(300));
+            boolean[] vertical = families(segments);
+
+            // Identity hashes must be unique for the hash based grouping
+            Map<Integer, double[]> hashes = new HashMap<>();
+            for (double[] segment : segments) {
+                hashes.put(segment.hashCode(), segment);
+            }
+            if (hashes.size() != segments.size()) {
+                continue;
+            }
+
+            assertSameGroups(new HashGrouper().group(segments, vertical), grouper.group(segments, vertical));
+        }
+    }
+
+    @Test
+    public void degenerateSegments() {
+        List<double[]> segments = new ArrayList<>();
+        segments.add(new double[] { 10, 10, 10, 10 });
+        segments.add(new double[] { 10, 10, 10, 100 });
+        segments.add(new double[] { 10, 10, 10, 10 });
+        segments.add(new double[] { 11, 10, 11, 100 });
+
+        List<int[]> groups = new SegmentGrouper().group(segments, families(segments));
+
+        assertEquals(3, groups.size());
+    }
+
+}
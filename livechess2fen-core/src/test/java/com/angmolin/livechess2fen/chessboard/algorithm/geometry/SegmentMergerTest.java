@@ -0,0 +1,116 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.geometry;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentMergerTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    private static Mat generatePoints(double[] segment, int n) {
+        Mat points = new Mat(n, 1, CvType.CV_32FC2);
+
+        double t = 1.0 / n;
+
+        for (int i = 0; i < n; i++) {
+            double it = i * t;
+
+            double[] xy = new double[] {
+                    segment[0] + (segment[2] - segment[0]) * it,
+                    segment[1] + (segment[3] - segment[1]) * it
+            };
+
+            points.put(i, 0, xy);
+        }
+
+        return points;
+    }
+
+    /*
+     * Merge as done by Slid before, with fitLine and minEnclosingCircle.
+     */
+    private static double[] mergeOpenCV(List<double[]> segments) {
+        Mat points = new Mat();
+
+        for (double[] segment : segments) {
+            points.push_back(generatePoints(segment, 10));
+        }
+
+        MatOfPoint2f points2f = new MatOfPoint2f(points);
+
+        float[] radiusOut = new float[1];
+        Imgproc.minEnclosingCircle(points2f, null, radiusOut);
+
+        double w = radiusOut[0] * (Math.PI / 2);
+
+        Mat segmentOut = new Mat();
+        Imgproc.fitLine(points2f, segmentOut, Imgproc.CV_DIST_L2, 0, 0.01, 0.01);
+
+        double x1 = segmentOut.get(0, 0)[0];
+        double y1 = segmentOut.get(1, 0)[0];
+        double x2 = segmentOut.get(2, 0)[0];
+        double y2 = segmentOut.get(3, 0)[0];
+
+        return new double[] {
+                x2 - x1 * w,
+                y2 - y1 * w,
+                x2 + x1 * w,
+                y2 + y1 * w
+        };
+    }
+
+    @Test
+    public void sameSegmentAsOpenCV() {
+        Random random = new Random(19);
+
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<double[]> segments = new ArrayList<>();
+            int n = 1 + random.nextInt(6);
+            double line = 50 + random.nextDouble() * 400;
+            boolean vertical = random.nextBoolean();
+
+            for (int k = 0; k < n; k++) {
+                double start = random.nextDouble() * 250;
+                double end = start + 50 + random.nextDouble() * 250;
+                double shift = line + random.nextGaussian() * 1.5;
+                double tilt = random.nextGaussian() * 2;
+
+                segments.add(vertical
+                        ? new double[] { shift, start, shift + tilt, end }
+                        : new double[] { end, shift, start, shift + tilt });
+            }
+
+            int[] group = new int[n];
+            for (int k = 0; k < n; k++) {
+                group[k] = k;
+            }
+
+            double[] expected = mergeOpenCV(segments);
+            double[] actual = SegmentMerger.merge(segments, group);
+
+            // The enclosing circle is slightly larger than the half extent
+            double length = Math.hypot(expected[2] - expected[0], expected[3] - expected[1]);
+            double tolerance = 0.01 * length + 0.1;
+
+            for (int k = 0; k < 4; k++) {
+                assertEquals("Coordinate " + k, expected[k], actual[k], tolerance);
+            }
+        }
+    }
+
+}
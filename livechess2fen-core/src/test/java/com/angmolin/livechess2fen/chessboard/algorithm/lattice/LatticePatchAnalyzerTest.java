@@ -0,0 +1,164 @@
+package com.angmolin.livechess2fen.chessboard.algorithm.lattice;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+ * Compares the analyzer with the OpenCV implementation of Laps on the LAPS
+ * dataset, read from data/laps of the repository.
+ */
+public class LatticePatchAnalyzerTest {
+
+    /* Tests run from the module directory */
+    private static final File dataset = new File("../data/laps");
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    /*
+     * Geometric part of Laps.isLatticePoint before the analyzer.
+     */
+    private static class OpenCVResult {
+
+        Mat grayImage;
+        double threshold;
+        Mat cannyImage;
+        int numRhomboid;
+
+    }
+
+    private static OpenCVResult analyzeOpenCV(Mat image) {
+        int cols = image.cols();
+        int rows = image.rows();
+
+        OpenCVResult result = new OpenCVResult();
+
+        Mat grayImage = new Mat(rows, cols, CvType.CV_8U);
+        Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_RGBA2GRAY);
+
+        Mat thresholdImage = new Mat(rows, cols, CvType.CV_8U);
+        result.threshold = Imgproc.threshold(grayImage, thresholdImage, 0, 255, Imgproc.THRESH_OTSU);
+
+        Mat cannyImage = new Mat(rows, cols, CvType.CV_8U);
+        Imgproc.Canny(thresholdImage, cannyImage, 0, 255);
+
+        Size kernelSize = new Size(1, 1);
+        Mat kernel = Imgproc.getStructuringElement(Imgproc.CV_SHAPE_RECT, kernelSize);
+
+        Mat dilatedImage = new Mat(rows, cols, CvType.CV_8U);
+        Imgproc.dilate(cannyImage, dilatedImage, kernel);
+
+        Mat maskedImage = new Mat(rows + 2, cols + 2, CvType.CV_8U);
+        Core.copyMakeBorder(dilatedImage, maskedImage, 1, 1, 1, 1, Core.BORDER_CONSTANT, new Scalar(255));
+        Core.bitwise_not(maskedImage, maskedImage);
+
+        Mat hierarchy = new Mat();
+        List<MatOfPoint> contoursOut = new LinkedList<>();
+        Imgproc.findContours(maskedImage, contoursOut, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_NONE);
+
+        for (MatOfPoint contour : contoursOut) {
+            MatOfPoint2f contour2f = new MatOfPoint2f(contour.toArray());
+
+            float[] radiusOut = new float[1];
+            Imgproc.minEnclosingCircle(contour2f, null, radiusOut);
+
+            MatOfPoint2f approxOut = new MatOfPoint2f();
+            Imgproc.approxPolyDP(contour2f, approxOut, 0.1 * Imgproc.arcLength(contour2f, true), true);
+
+            if (approxOut.rows() == 4 && radiusOut[0] < 14) {
+                result.numRhomboid++;
+            }
+        }
+
+        result.grayImage = grayImage;
+        result.cannyImage = cannyImage;
+
+        return result;
+    }
+
+    /*
+     * RGBA as Utils.bitmapToMat gives it on the device.
+     */
+    private static Mat loadPatch(File file) {
+        Mat image = Imgcodecs.imread(file.getPath());
+        assertFalse("Cannot read " + file, image.empty());
+
+        Mat patch = new Mat();
+        Imgproc.cvtColor(image, patch, Imgproc.COLOR_BGR2RGBA);
+        image.release();
+
+        return patch;
+    }
+
+    private static void checkFolder(String folder) {
+        String[] names = new File(dataset, folder).list();
+
+        assertNotNull("No folder " + folder + " in " + dataset.getAbsolutePath(), names);
+        assertTrue("No images in " + folder, names.length > 0);
+        Arrays.sort(names);
+
+        LatticePatchAnalyzer analyzer = new LatticePatchAnalyzer();
+        int mismatches = 0;
+
+        for (String name : names) {
+            Mat patch = loadPatch(new File(new File(dataset, folder), name));
+            OpenCVResult expected = analyzeOpenCV(patch);
+
+            analyzer.load(patch);
+
+            byte[] gray = new byte[patch.rows() * patch.cols()];
+            expected.grayImage.get(0, 0, gray);
+            for (int row = 0; row < patch.rows(); row++) {
+                for (int col = 0; col < patch.cols(); col++) {
+                    assertEquals(name + " gray at " + row + ", " + col, gray[row * patch.cols() + col] & 0xff, analyzer.getGray(row, col));
+                }
+            }
+
+            assertEquals(name + " threshold", (int) expected.threshold, analyzer.getThreshold());
+
+            byte[] edges = new byte[patch.rows() * patch.cols()];
+            expected.cannyImage.get(0, 0, edges);
+            for (int i = 0; i < edges.length; i++) {
+                assertEquals(name + " edge " + i, edges[i], analyzer.getEdges()[i]);
+            }
+
+            // Contours are fitted in float, allow rare differences on the radius limit
+            if (expected.numRhomboid != analyzer.countQuadrilaterals()) {
+                mismatches++;
+            }
+        }
+
+        assertTrue(folder + ": " + mismatches + " of " + names.length + " patches differ", mismatches <= names.length / 200);
+    }
+
+    @Test
+    public void sameResultOnLatticePoints() {
+        checkFolder("ok");
+    }
+
+    @Test
+    public void sameResultOnOtherPoints() {
+        checkFolder("no");
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.angmolin.livechess2fen.pipeline;
+
+import com.angmolin.livechess2fen.chessboard.BoardTracker;
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+import com.angmolin.livechess2fen.types.MatArena;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+ * Runs the whole pipeline on a drawn board with fixed classifiers, so it
+ * checks the stages work together on the desktop OpenCV, not the models.
+ */
+public class BoardRecognizerTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    /*
+     * Answers the same class for every image.
+     */
+    static class FixedClassifier implements ImageClassifier {
+
+        private final Size inputSize;
+        private final float[] probabilities;
+        private final int maximum;
+
+        FixedClassifier(Size inputSize, float[] probabilities, int maximum) {
+            this.inputSize = inputSize;
+            this.probabilities = probabilities;
+            this.maximum = maximum;
+        }
+
+        @Override
+        public Size getInputSize() {
+            return inputSize;
+        }
+
+        @Override
+        public int classifyAndGetMax(Mat image) {
+            return maximum;
+        }
+
+        @Override
+        public float[] classifyAndGetResult(Mat image) {
+            return probabilities.clone();
+        }
+
+        @Override
+        public float[] classifyBatch(List<Mat> images) {
+            float[] result = new float[images.size() * probabilities.length];
+
+            for (int i = 0; i < images.size(); i++) {
+                System.arraycopy(probabilities, 0, result, i * probabilities.length, probabilities.length);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int[] classifyBatchAndGetMax(List<Mat> images) {
+            int[] result = new int[images.size()];
+            Arrays.fill(result, maximum);
+
+            return result;
+        }
+
+    }
+
+    /*
+     * RGBA frame, as the camera gives it, with an empty board in the middle.
+     */
+    static Mat drawBoard() {
+        Mat frame = new Mat(480, 640, CvType.CV_8UC4, new Scalar(90, 110, 100, 255));
+
+        int squareLength = 45;
+        Point origin = new Point(140, 60);
+
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Scalar color = (row + col) % 2 == 0 ? new Scalar(235, 225, 200, 255) : new Scalar(60, 40, 30, 255);
+
+                Imgproc.rectangle(frame,
+                        new Point(origin.x + col * squareLength, origin.y + row * squareLength),
+                        new Point(origin.x + (col + 1) * squareLength - 1, origin.y + (row + 1) * squareLength - 1),
+                        color, -1);
+            }
+        }
+
+        return frame;
+    }
+
+    private static BoardRecognizer recognizer() {
+        /* Every patch is a lattice point, every square is empty */
+        ImageClassifier laps = new FixedClassifier(new Size(21, 21), new float[] { 1, 0 }, 0);
+
+        float[] empty = new float[13];
+        Arrays.fill(empty, 0.01f);
+        empty[6] = 0.9f;
+        ImageClassifier pieces = new FixedClassifier(new Size(64, 64), empty, 6);
+
+        return new BoardRecognizer(laps, pieces);
+    }
+
+    /*
+     * The first frame goes through SLID, LAPS and CPS, the second one is
+     * followed by the tracker.
+     */
+    @Test
+    public void recognizesAndTracksTheBoard() {
+        BoardRecognizer recognizer = recognizer();
+        Mat frame = drawBoard();
+
+        for (int i = 0; i < 2; i++) {
+            FrameJob job = recognizer.recognize(frame);
+
+            try {
+                assertEquals(4, job.fourPointsCornerPoints.first.size());
+                assertEquals(49, job.fourPointsCornerPoints.second.size());
+                assertEquals(BoardTracker.State.TRACKING, job.trackingState);
+                assertEquals(64, job.squares.size());
+                assertEquals(64, job.cnnResults.length);
+                assertNotNull(job.fen);
+                assertEquals(8, job.fen.split("/").length);
+                assertTrue(job.finishTimestamp >= job.submitTimestamp);
+            }
+            finally {
+                job.release();
+            }
+        }
+
+        frame.release();
+
+        assertEquals(0, MatArena.openArenas());
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.angmolin.livechess2fen.pipeline;
+
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+import com.angmolin.livechess2fen.classifier.ImageClassifier;
+import com.angmolin.livechess2fen.types.MatArena;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    /*
+     * Throws an Error on its first batch, as a failing native call would.
+     */
+    private static class FailingOnceClassifier extends BoardRecognizerTest.FixedClassifier {
+
+        private boolean failed = false;
+
+        FailingOnceClassifier(Size inputSize, float[] probabilities, int maximum) {
+            super(inputSize, probabilities, maximum);
+        }
+
+        @Override
+        public float[] classifyBatch(List<Mat> images) {
+            if (!failed) {
+                failed = true;
+                throw new UnsatisfiedLinkError("classifyBatch");
+            }
+
+            return super.classifyBatch(images);
+        }
+
+    }
+
+    @Test
+    public void stageErrorDoesNotStopThePipeline() throws InterruptedException {
+        ImageClassifier laps = new BoardRecognizerTest.FixedClassifier(new Size(21, 21), new float[] { 1, 0 }, 0);
+
+        float[] empty = new float[13];
+        Arrays.fill(empty, 0.01f);
+        empty[6] = 0.9f;
+        ImageClassifier pieces = new FailingOnceClassifier(new Size(64, 64), empty, 6);
+
+        CountDownLatch processed = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(new ChessboardDetector(laps), pieces, job -> processed.countDown());
+
+        Mat frame = BoardRecognizerTest.drawBoard();
+
+        pipeline.start();
+
+        /* The first classified frame fails, a later one has to come out */
+        for (int i = 0; i < 200 && !processed.await(100, TimeUnit.MILLISECONDS); i++) {
+            pipeline.submit(frame);
+        }
+
+        pipeline.stop();
+
+        assertEquals(0, processed.getCount());
+        assertEquals(1, pipeline.getFailedFrames());
+
+        assertFalse(pipeline.submit(frame));
+        frame.release();
+
+        assertEquals(0, MatArena.openArenas());
+    }
+
+}
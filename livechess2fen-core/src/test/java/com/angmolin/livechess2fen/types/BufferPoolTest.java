@@ -0,0 +1,113 @@
+package com.angmolin.livechess2fen.types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    private static class Buffer {
+
+        final int size;
+        boolean destroyed = false;
+
+        Buffer(int size) {
+            this.size = size;
+        }
+
+    }
+
+    private static class Pool extends BufferPool<Buffer> {
+
+        Pool(int maxIdlePerKey) {
+            super(maxIdlePerKey);
+        }
+
+        @Override
+        protected long key(Buffer buffer) {
+            return buffer.size > 0 ? buffer.size : unpooled;
+        }
+
+        @Override
+        protected void destroy(Buffer buffer) {
+            buffer.destroyed = true;
+        }
+
+        Buffer borrow(int size) {
+            Buffer buffer = take(size);
+
+            return buffer != null ? buffer : borrowed(new Buffer(size));
+        }
+
+    }
+
+    @Test
+    public void reusesBuffersOfTheSameKey() {
+        Pool pool = new Pool(2);
+
+        Buffer first = pool.borrow(10);
+        assertTrue(pool.recycle(first));
+
+        assertSame(first, pool.borrow(10));
+        assertNotSame(first, pool.borrow(20));
+
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(2, pool.getBorrowedCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void steadyStateAllocatesNothing() {
+        Pool pool = new Pool(2);
+
+        for (int frame = 0; frame < 100; frame++) {
+            Buffer board = pool.borrow(1200);
+            Buffer downscaled = pool.borrow(500);
+
+            pool.recycle(board);
+            pool.recycle(downscaled);
+        }
+
+        assertEquals(2, pool.getMisses());
+        assertEquals(198, pool.getHits());
+    }
+
+    @Test
+    public void destroysWhatItDoesNotKeep() {
+        Pool pool = new Pool(1);
+
+        Buffer first = pool.borrow(10);
+        Buffer second = pool.borrow(10);
+        Buffer unpooled = pool.borrow(0);
+
+        assertTrue(pool.recycle(first));
+        assertTrue(pool.recycle(second));
+        assertTrue(pool.recycle(unpooled));
+
+        assertFalse(first.destroyed);
+        assertTrue(second.destroyed);
+        assertTrue(unpooled.destroyed);
+        assertEquals(1, pool.getIdleCount());
+
+        pool.clear();
+        assertTrue(first.destroyed);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void ignoresBuffersNotBorrowed() {
+        Pool pool = new Pool(2);
+        Buffer buffer = new Buffer(10);
+
+        assertFalse(pool.recycle(buffer));
+
+        Buffer borrowed = pool.borrow(10);
+        assertTrue(pool.recycle(borrowed));
+        assertFalse(pool.recycle(borrowed));
+
+        assertFalse(buffer.destroyed);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.angmolin.livechess2fen.types;
+
+import com.angmolin.livechess2fen.chessboard.ChessboardDetector;
+
+import nu.pattern.OpenCV;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MatArenaTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void releasesEveryMatAtOnce() {
+        int liveMats = MatArena.liveMats();
+
+        MatArena arena = new MatArena();
+        Mat first = arena.add(new Mat(10, 10, CvType.CV_8UC4));
+        Mat second = arena.add(new Mat(20, 5, CvType.CV_8U));
+        arena.add(first);
+
+        assertEquals(2, arena.size());
+        assertEquals(10 * 10 * 4 + 20 * 5, arena.bytes());
+        assertEquals(liveMats + 2, MatArena.liveMats());
+
+        arena.release();
+
+        assertTrue(arena.isReleased());
+        assertTrue(first.empty());
+        assertTrue(second.empty());
+        assertEquals(liveMats, MatArena.liveMats());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void tracksOnlyInsideTheScope() {
+        Mat outside = MatArena.track(new Mat());
+
+        try (MatArena arena = new MatArena()) {
+            try (MatArena.Scope scope = arena.enter()) {
+                MatArena.track(new Mat(4, 4, CvType.CV_8U));
+
+                try (MatArena inner = new MatArena(); MatArena.Scope innerScope = inner.enter()) {
+                    MatArena.track(new Mat(4, 4, CvType.CV_8U));
+                    assertEquals(1, inner.size());
+                }
+
+                assertSame(arena, MatArena.current());
+            }
+
+            assertNull(MatArena.current());
+            assertEquals(1, arena.size());
+        }
+
+        outside.release();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void imageObjectLayersDoNotLeak() {
+        MatArena arena = new MatArena();
+
+        try (MatArena.Scope scope = arena.enter()) {
+            Mat frame = arena.add(new Mat(480, 640, CvType.CV_8UC4, new Scalar(0, 0, 0, 255)));
+
+            ImageObject imageObject = new ImageObject(frame);
+            imageObject.crop(Arrays.asList(
+                    new double[] { 50, 40 },
+                    new double[] { 450, 40 },
+                    new double[] { 450, 360 },
+                    new double[] { 50, 360 }
+            ));
+            imageObject.warpOriginal();
+
+            assertEquals(ChessboardDetector.boardLength, imageObject.last().original.rows());
+            assertTrue(arena.bytes() > 0);
+        }
+
+        arena.release();
+
+        MatArena.assertNoLeaks();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void pooledMatsAreReusedByTheNextArena() {
+        Mat first;
+
+        try (MatArena arena = new MatArena(); MatArena.Scope scope = arena.enter()) {
+            first = MatArena.allocate(123, 45, CvType.CV_8UC4);
+        }
+
+        assertFalse(first.empty());
+
+        long hits = MatPool.shared.getHits();
+
+        try (MatArena arena = new MatArena(); MatArena.Scope scope = arena.enter()) {
+            assertSame(first, MatArena.allocate(123, 45, CvType.CV_8UC4));
+        }
+
+        assertEquals(hits + 1, MatPool.shared.getHits());
+    }
+
+}